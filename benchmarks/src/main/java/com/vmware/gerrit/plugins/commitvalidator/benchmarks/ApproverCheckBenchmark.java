@@ -0,0 +1,64 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.LabelId;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.PatchSetApproval;
+import com.vmware.gerrit.plugins.commitvalidator.rules.SubmitRules;
+import com.vmware.gerrit.plugins.commitvalidator.utils.AccountIdSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the approvals of a change against additional approvers named by "user" rules, as done by
+ * {@link SubmitRules} for every evaluation. The approver is the last voter, the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApproverCheckBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int approverCount;
+
+    @Param({"2", "20"})
+    public int approvalCount;
+
+    private AccountIdSet approvers;
+    private List<PatchSetApproval> approvals;
+
+    @Setup
+    public void setUp() {
+        List<Integer> accountIds = new ArrayList<>(approverCount);
+        for (int i = 0; i < approverCount; i++) {
+            accountIds.add(1000000 + i * 7);
+        }
+        approvers = AccountIdSet.of(accountIds);
+
+        PatchSet.Id patchSetId = PatchSet.id(Change.id(1), 1);
+        approvals = new ArrayList<>(approvalCount);
+        for (int i = 0; i < approvalCount; i++) {
+            // Only the last voter is an approver
+            int accountId = i == approvalCount - 1 ? 1000000 + (approverCount - 1) * 7 : 1 + i;
+            String label = i % 2 == 0 ? "Code-Review" : "Verified";
+            approvals.add(PatchSetApproval.builder()
+                    .key(PatchSetApproval.key(patchSetId, Account.id(accountId),
+                            LabelId.create(i == approvalCount - 1 ? "Code-Review" : label)))
+                    .value(1)
+                    .granted(new Timestamp(1600000000000L))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public boolean hasAdditionalApproval() {
+        return SubmitRules.hasAdditionalApproval(approvals, accountId -> approvers.contains(accountId.get()));
+    }
+}
@@ -0,0 +1,63 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.validators.CommitValidationException;
+import com.vmware.gerrit.plugins.commitvalidator.listeners.CommitValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates one synthetic commit per invocation through {@link CommitValidator#onCommitReceived}.
+ * Jira statuses are served from the status cache, so the numbers show the plugin's own cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Guice's class generation needs java.lang opened on Java 9 and later; Java 8 ignores the option
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+public class CommitValidationBenchmark {
+    @Param({"20", "500"})
+    public int messageLines;
+
+    @Param({"8", "32"})
+    public int entryCount;
+
+    @Param({"SIMPLE", "COMPLEX"})
+    public SyntheticTemplate.RegexComplexity regexComplexity;
+
+    @Param({"true"})
+    public boolean endpointValidation;
+
+    @Param({"true", "false"})
+    public boolean validMessage;
+
+    private InProcessGerrit gerrit;
+    private CommitValidator commitValidator;
+    private CommitReceivedEvent event;
+
+    @Setup
+    public void setUp() {
+        SyntheticTemplate template = new SyntheticTemplate(entryCount, regexComplexity, endpointValidation);
+        gerrit = new InProcessGerrit(template.toPluginConfig("http://localhost:1"));
+        gerrit.cacheIssueStatus(SyntheticTemplate.ISSUE_ID, "Open");
+        commitValidator = gerrit.newCommitValidator();
+        event = InProcessGerrit.newCommitReceivedEvent(template.commitMessage(messageLines, validMessage));
+    }
+
+    @TearDown
+    public void tearDown() {
+        gerrit.close();
+    }
+
+    @Benchmark
+    public Object onCommitReceived() {
+        try {
+            return commitValidator.onCommitReceived(event);
+        } catch (CommitValidationException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the parts of the Jira REST API the plugin uses: the issue resource with
+ * the status field and the JQL search by issue keys. Answers are delayed by a configurable latency
+ * and fail with HTTP 503 at a configurable rate. Unknown issues are answered with 404.
+ */
+public class FakeJira implements AutoCloseable {
+    private static final String ISSUE_PATH = "/rest/api/2/issue/";
+    private static final String SEARCH_PATH = "/rest/api/2/search";
+    private static final Pattern QUOTED_KEY = Pattern.compile("\"([^\"]+)\"");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> statuses = new ConcurrentHashMap<>();
+    private final AtomicLong issueRequests = new AtomicLong();
+    private final AtomicLong searchRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double errorRate;
+
+    /**
+     * Starts the stand-in on a free port of the loopback interface
+     *
+     * @param threads number of requests answered at the same time
+     * @throws IOException
+     */
+    public FakeJira(int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("FakeJira-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext(ISSUE_PATH, this::handleIssue);
+        server.createContext(SEARCH_PATH, this::handleSearch);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delays every answer by the given latency plus a random part of up to the jitter
+     *
+     * @param latencyMillis
+     * @param jitterMillis
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Sets the share of requests, between 0 and 1, answered with HTTP 503
+     *
+     * @param errorRate
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setIssueStatus(String issueId, String status) {
+        statuses.put(issueId, status);
+    }
+
+    public long getIssueRequests() {
+        return issueRequests.get();
+    }
+
+    public long getSearchRequests() {
+        return searchRequests.get();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    private void handleIssue(HttpExchange exchange) throws IOException {
+        issueRequests.incrementAndGet();
+        if (!simulate(exchange)) {
+            return;
+        }
+        String issueId = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(ISSUE_PATH.length()),
+                StandardCharsets.UTF_8.name());
+        String status = statuses.get(issueId);
+        if (status == null) {
+            respond(exchange, 404, "{\"errorMessages\":[\"Issue Does Not Exist\"],\"errors\":{}}");
+            return;
+        }
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writeIssue(writer, issueId, status);
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        searchRequests.incrementAndGet();
+        if (!simulate(exchange)) {
+            return;
+        }
+        String jql = "";
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("jql=")) {
+                    jql = URLDecoder.decode(parameter.substring(4), StandardCharsets.UTF_8.name());
+                }
+            }
+        }
+        // Only "key in (...)" searches are sent, unknown keys are left out like with validateQuery=false
+        List<String> issueIds = new ArrayList<>();
+        Matcher matcher = QUOTED_KEY.matcher(jql);
+        while (matcher.find()) {
+            issueIds.add(matcher.group(1));
+        }
+        StringWriter body = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(body)) {
+            writer.beginObject();
+            writer.name("issues").beginArray();
+            for (String issueId : issueIds) {
+                String status = statuses.get(issueId);
+                if (status != null) {
+                    writeIssue(writer, issueId, status);
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    /**
+     * Waits for the configured latency and fails the request at the configured rate
+     *
+     * @param exchange
+     * @return false if the request was failed
+     * @throws IOException
+     */
+    private boolean simulate(HttpExchange exchange) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            failedRequests.incrementAndGet();
+            respond(exchange, 503, "{\"errorMessages\":[\"Service Unavailable\"]}");
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeIssue(JsonWriter writer, String issueId, String status) throws IOException {
+        writer.beginObject();
+        writer.name("key").value(issueId);
+        writer.name("fields").beginObject();
+        writer.name("status").beginObject().name("name").value(status).endObject();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
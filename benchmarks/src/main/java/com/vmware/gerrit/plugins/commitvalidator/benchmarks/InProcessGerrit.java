@@ -0,0 +1,254 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.data.GroupReference;
+import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.LabelId;
+import com.google.gerrit.entities.PatchSet;
+import com.google.gerrit.entities.PatchSetApproval;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.account.Emails;
+import com.google.gerrit.server.account.GroupBackend;
+import com.google.gerrit.server.account.GroupMembership;
+import com.google.gerrit.server.account.ListGroupMembership;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectConfig;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ResolvedUsers;
+import com.vmware.gerrit.plugins.commitvalidator.listeners.CommitValidator;
+import com.vmware.gerrit.plugins.commitvalidator.rules.SubmitRules;
+import com.vmware.gerrit.plugins.commitvalidator.utils.EndpointExecutor;
+import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraClientRegistry;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraIssueStatusCache;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Wires the plugin's validation classes the way Gerrit does, with the Gerrit server replaced by
+ * in-process stand-ins. Every project uses the given plugin config and the synthetic template.
+ */
+public class InProcessGerrit implements AutoCloseable {
+    public static final String PROJECT_NAME = "bench";
+    public static final String BRANCH = "master";
+    public static final String APPROVERS_GROUP = "bench-approvers";
+    public static final AccountGroup.UUID APPROVERS_GROUP_UUID = AccountGroup.uuid("bench-approvers-uuid");
+    // Account IDs of the additional approvers start here
+    public static final int FIRST_APPROVER_ID = 1000000;
+
+    private final Injector injector;
+    private final Cache<String, JiraIssueStatus> jiraIssueStatuses = CacheBuilder.newBuilder().build();
+
+    public InProcessGerrit(Config pluginConfig) {
+        this(pluginConfig, 0);
+    }
+
+    /**
+     * @param pluginConfig
+     * @param approverCount members of the additional approvers group, 0 to not require an
+     *                      additional approval
+     */
+    public InProcessGerrit(Config pluginConfig, int approverCount) {
+        Config projectConfig = new Config();
+        projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                Constants.CONFIG_PROJECT_RULES_BRANCH, BRANCH);
+        projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                Constants.CONFIG_PROJECT_RULES_COMMIT_TEMPLATE, SyntheticTemplate.TEMPLATE_NAME);
+        GerritApi gerritApi = mock(GerritApi.class, withSettings().stubOnly().defaultAnswer(RETURNS_DEEP_STUBS));
+        GroupBackend groupBackend = mock(GroupBackend.class, withSettings().stubOnly());
+        if (approverCount > 0) {
+            projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                    Constants.CONFIG_PROJECT_RULES_ADDITIONAL_CR_APPROVAL_IF, "modifies-existing-test-case eq ''");
+            projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                    Constants.CONFIG_PROJECT_RULES_ADDITIONAL_CR_APPROVERS, "group " + APPROVERS_GROUP);
+            when(groupBackend.suggest(eq(APPROVERS_GROUP), any()))
+                    .thenReturn(Collections.singletonList(new GroupReference(APPROVERS_GROUP_UUID, APPROVERS_GROUP)));
+        }
+
+        // Accounts from FIRST_APPROVER_ID on are members of the approvers group
+        Map<Account.Id, IdentifiedUser> users = new ConcurrentHashMap<>();
+        IdentifiedUser.GenericFactory userFactory = mock(IdentifiedUser.GenericFactory.class, withSettings().stubOnly());
+        when(userFactory.create(any(Account.Id.class))).thenAnswer(invocation -> users.computeIfAbsent(
+                invocation.getArgument(0), accountId -> {
+                    IdentifiedUser user = mock(IdentifiedUser.class, withSettings().stubOnly());
+                    boolean approver = accountId.get() >= FIRST_APPROVER_ID
+                            && accountId.get() < FIRST_APPROVER_ID + approverCount;
+                    when(user.getEffectiveGroups()).thenReturn(approver
+                            ? new ListGroupMembership(Collections.singleton(APPROVERS_GROUP_UUID)) : GroupMembership.EMPTY);
+                    return user;
+                }));
+        Emails emails = mock(Emails.class, withSettings().stubOnly());
+        try {
+            when(emails.getAccountFor(any())).thenReturn(ImmutableSet.of(Account.id(1)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        ProjectState projectState = mock(ProjectState.class, withSettings().stubOnly());
+        when(projectState.parents()).thenReturn(FluentIterable.of());
+        ProjectConfig projectConfigFile = mock(ProjectConfig.class, withSettings().stubOnly());
+        when(projectState.getConfig()).thenReturn(projectConfigFile);
+        ProjectCache projectCache = mock(ProjectCache.class, withSettings().stubOnly());
+        when(projectCache.get(any(Project.NameKey.class))).thenReturn(projectState);
+
+        PluginConfigFactory pluginConfigFactory = mock(PluginConfigFactory.class, withSettings().stubOnly());
+        when(pluginConfigFactory.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN)).thenReturn(pluginConfig);
+        when(pluginConfigFactory.getFromProjectConfigWithInheritance(any(ProjectState.class),
+                eq(Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION)))
+                .thenReturn(new PluginConfig(Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION, projectConfig));
+
+        this.injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(GerritApi.class).toInstance(gerritApi);
+                bind(GroupBackend.class).toInstance(groupBackend);
+                bind(IdentifiedUser.GenericFactory.class).toInstance(userFactory);
+                bind(Emails.class).toInstance(emails);
+                bind(OneOffRequestContext.class).toInstance(mock(OneOffRequestContext.class, withSettings().stubOnly()));
+                bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+                bind(ProjectCache.class).toInstance(projectCache);
+                bind(MetricMaker.class).to(DisabledMetricMaker.class);
+                bind(new TypeLiteral<Cache<String, JiraIssueStatus>>() {
+                }).annotatedWith(Names.named(JiraIssueStatusCache.CACHE_NAME)).toInstance(jiraIssueStatuses);
+                bind(new TypeLiteral<Cache<String, ResolvedUsers>>() {
+                }).annotatedWith(Names.named(GerritUtils.CACHE_NAME)).toInstance(CacheBuilder.newBuilder().build());
+                bind(new TypeLiteral<Cache<String, Optional<SubmitRecord.Status>>>() {
+                }).annotatedWith(Names.named(SubmitRules.CACHE_NAME)).toInstance(CacheBuilder.newBuilder()
+                        .maximumSize(16384).build());
+            }
+        });
+    }
+
+    public <T> T getInstance(Class<T> type) {
+        return injector.getInstance(type);
+    }
+
+    public CommitValidator newCommitValidator() {
+        return injector.getInstance(CommitValidator.class);
+    }
+
+    public SubmitRules newSubmitRules() {
+        return injector.getInstance(SubmitRules.class);
+    }
+
+    /**
+     * Caches a status as if it had been looked up from Jira before
+     *
+     * @param issueId
+     * @param status
+     */
+    public void cacheIssueStatus(String issueId, String status) {
+        jiraIssueStatuses.put(SyntheticTemplate.ENDPOINT_NAME + "/" + issueId,
+                new JiraIssueStatus(issueId, status, System.currentTimeMillis()));
+    }
+
+    public void clearIssueStatuses() {
+        jiraIssueStatuses.invalidateAll();
+    }
+
+    /**
+     * Creates the event Gerrit sends for a commit pushed to the benchmark project
+     *
+     * @param message
+     * @return
+     */
+    public static CommitReceivedEvent newCommitReceivedEvent(String message) {
+        String rawCommit = "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+                + "author Bench Author <author@example.com> 1600000000 +0000\n"
+                + "committer Bench Committer <committer@example.com> 1600000000 +0000\n"
+                + "\n" + message;
+        CommitReceivedEvent event = new CommitReceivedEvent();
+        event.project = new Project(Project.nameKey(PROJECT_NAME));
+        event.refName = "refs/heads/" + BRANCH;
+        event.commit = RevCommit.parse(rawCommit.getBytes(StandardCharsets.UTF_8));
+        return event;
+    }
+
+    /**
+     * Creates the data Gerrit evaluates submit rules on, for the current patch set of a change to
+     * the benchmark project
+     *
+     * @param changeNumber
+     * @param approved whether one of the additional approvers voted on Code-Review
+     * @return
+     */
+    public static ChangeData newChangeData(int changeNumber, boolean approved) {
+        Change.Id changeId = Change.id(changeNumber);
+        Change change = new Change(Change.key("I" + changeNumber), changeId, Account.id(1),
+                BranchNameKey.create(Project.nameKey(PROJECT_NAME), BRANCH), new Timestamp(1600000000000L));
+        PatchSet.Id patchSetId = PatchSet.id(changeId, 1);
+        change.setCurrentPatchSet(patchSetId, "Synthetic change " + changeNumber, "Synthetic change " + changeNumber);
+
+        List<PatchSetApproval> approvals = new ArrayList<>();
+        approvals.add(newApproval(patchSetId, 1, "Code-Review"));
+        approvals.add(newApproval(patchSetId, 2, "Verified"));
+        if (approved) {
+            approvals.add(newApproval(patchSetId, FIRST_APPROVER_ID, "Code-Review"));
+        }
+
+        PersonIdent ident = new PersonIdent("Bench Author", "author@example.com");
+        ChangeData changeData = mock(ChangeData.class, withSettings().stubOnly());
+        when(changeData.getId()).thenReturn(changeId);
+        when(changeData.project()).thenReturn(Project.nameKey(PROJECT_NAME));
+        when(changeData.change()).thenReturn(change);
+        when(changeData.currentApprovals()).thenReturn(approvals);
+        when(changeData.getAuthor()).thenReturn(ident);
+        when(changeData.getCommitter()).thenReturn(ident);
+        return changeData;
+    }
+
+    private static PatchSetApproval newApproval(PatchSet.Id patchSetId, int accountId, String label) {
+        return PatchSetApproval.builder()
+                .key(PatchSetApproval.key(patchSetId, Account.id(accountId), LabelId.create(label)))
+                .value(1)
+                .granted(new Timestamp(1600000000000L))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        injector.getInstance(JiraClientRegistry.class).stop();
+        injector.getInstance(EndpointExecutor.class).stop();
+    }
+}
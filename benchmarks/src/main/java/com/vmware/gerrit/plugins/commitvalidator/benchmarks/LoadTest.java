@@ -0,0 +1,222 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.google.gerrit.common.data.SubmitRecord;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.validators.CommitValidationException;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.vmware.gerrit.plugins.commitvalidator.listeners.CommitValidator;
+import com.vmware.gerrit.plugins.commitvalidator.rules.SubmitRules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives concurrent commit validations and submit rule evaluations through the plugin, with Jira
+ * served by {@link FakeJira}, and reports throughput and latency percentiles. Runs without network
+ * access. Options are given as --name=value, see {@link #main(String[])}.
+ */
+public class LoadTest {
+    /**
+     * Options and defaults:
+     * --threads=32           concurrent callers
+     * --duration=30          measured seconds, after --warmup=10 seconds
+     * --submitRatio=0.2      share of submit rule evaluations, the rest are received commits
+     * --validRatio=0.9       share of received commits with a valid message
+     * --issues=1000          distinct Jira issues referred to; a tenth is missing, a tenth closed
+     * --changes=1000         distinct changes the submit rule is evaluated on
+     * --approvers=100        members of the additional approvers group
+     * --entryCount=8, --messageLines=20, --regexComplexity=SIMPLE   commit template and messages
+     * --jiraLatency=50, --jiraJitter=20   Jira answer time in ms
+     * --jiraErrorRate=0      share of Jira requests failing with HTTP 503
+     * --jiraThreads=64       Jira requests answered at the same time
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "32"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        double submitRatio = Double.parseDouble(options.getOrDefault("submitRatio", "0.2"));
+        double validRatio = Double.parseDouble(options.getOrDefault("validRatio", "0.9"));
+        int issues = Integer.parseInt(options.getOrDefault("issues", "1000"));
+        int changes = Integer.parseInt(options.getOrDefault("changes", "1000"));
+        int approvers = Integer.parseInt(options.getOrDefault("approvers", "100"));
+        int messageLines = Integer.parseInt(options.getOrDefault("messageLines", "20"));
+        SyntheticTemplate template = new SyntheticTemplate(
+                Integer.parseInt(options.getOrDefault("entryCount", "8")),
+                SyntheticTemplate.RegexComplexity.valueOf(options.getOrDefault("regexComplexity", "SIMPLE")),
+                true);
+
+        try (FakeJira jira = new FakeJira(Integer.parseInt(options.getOrDefault("jiraThreads", "64")));
+             InProcessGerrit gerrit = new InProcessGerrit(template.toPluginConfig(jira.getUrl()), approvers)) {
+            jira.setLatency(Long.parseLong(options.getOrDefault("jiraLatency", "50")),
+                    Long.parseLong(options.getOrDefault("jiraJitter", "20")));
+            jira.setErrorRate(Double.parseDouble(options.getOrDefault("jiraErrorRate", "0")));
+            for (int i = 0; i < issues; i++) {
+                if (i % 10 != 0) {
+                    jira.setIssueStatus(issueId(i), i % 10 == 1 ? "Closed" : "Open");
+                }
+            }
+
+            CommitValidator commitValidator = gerrit.newCommitValidator();
+            SubmitRules submitRules = gerrit.newSubmitRules();
+            ChangeData[] changeData = new ChangeData[changes];
+            for (int i = 0; i < changes; i++) {
+                changeData[i] = InProcessGerrit.newChangeData(i + 1, i % 2 == 0);
+            }
+
+            System.out.printf("Running %d threads for %d s after %d s of warm-up against %s%n",
+                    threads, durationSeconds, warmupSeconds, jira.getUrl());
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            AtomicReference<Throwable> firstError = new AtomicReference<>();
+            List<Stats[]> results = new ArrayList<>();
+            List<Thread> workers = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                Stats[] stats = {new Stats(), new Stats()};
+                results.add(stats);
+                Thread worker = new Thread(() -> {
+                    try {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (long now = System.nanoTime(); now < measureUntil; now = System.nanoTime()) {
+                            boolean measured = now >= measureFrom;
+                            if (random.nextDouble() < submitRatio) {
+                                ChangeData change = changeData[random.nextInt(changes)];
+                                long start = System.nanoTime();
+                                try {
+                                    Optional<SubmitRecord> record = submitRules.evaluate(change);
+                                    boolean accepted = !record.isPresent() || record.get().status == SubmitRecord.Status.OK;
+                                    if (measured) {
+                                        stats[1].record(System.nanoTime() - start, accepted ? Outcome.ACCEPTED : Outcome.REJECTED);
+                                    }
+                                } catch (RuntimeException e) {
+                                    firstError.compareAndSet(null, e);
+                                    if (measured) {
+                                        stats[1].record(System.nanoTime() - start, Outcome.ERROR);
+                                    }
+                                }
+                            } else {
+                                String message = template.commitMessage(messageLines, random.nextDouble() < validRatio,
+                                        issueId(random.nextInt(issues)));
+                                CommitReceivedEvent event = InProcessGerrit.newCommitReceivedEvent(message);
+                                long start = System.nanoTime();
+                                Outcome outcome;
+                                try {
+                                    commitValidator.onCommitReceived(event);
+                                    outcome = Outcome.ACCEPTED;
+                                } catch (CommitValidationException e) {
+                                    outcome = Outcome.REJECTED;
+                                } catch (RuntimeException e) {
+                                    firstError.compareAndSet(null, e);
+                                    outcome = Outcome.ERROR;
+                                }
+                                if (measured) {
+                                    stats[0].record(System.nanoTime() - start, outcome);
+                                }
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "LoadTest-" + t);
+                worker.setDaemon(true);
+                workers.add(worker);
+            }
+            workers.forEach(Thread::start);
+            done.await();
+
+            Stats commits = new Stats();
+            Stats submits = new Stats();
+            for (Stats[] stats : results) {
+                commits.merge(stats[0]);
+                submits.merge(stats[1]);
+            }
+            System.out.printf("%n%-16s %9s %9s %9s %9s %7s %9s %9s %9s %9s%n", "Operation", "Count", "Ops/s",
+                    "Accepted", "Rejected", "Errors", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+            commits.print("commit-received", durationSeconds);
+            submits.print("submit-rule", durationSeconds);
+            System.out.printf("%nJira stand-in: %d issue requests, %d searches, %d failed%n",
+                    jira.getIssueRequests(), jira.getSearchRequests(), jira.getFailedRequests());
+            if (firstError.get() != null) {
+                System.out.println("First unexpected error:");
+                firstError.get().printStackTrace(System.out);
+            }
+        }
+        // Plugin executors use daemon threads, nothing else keeps the JVM alive
+        System.exit(0);
+    }
+
+    private static String issueId(int i) {
+        return "BENCH-" + (i + 1);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private enum Outcome {
+        ACCEPTED, REJECTED, ERROR
+    }
+
+    /**
+     * Latencies and outcomes recorded by one thread, merged when the run is over
+     */
+    private static class Stats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final long[] outcomes = new long[Outcome.values().length];
+
+        void record(long latencyNanos, Outcome outcome) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            outcomes[outcome.ordinal()]++;
+        }
+
+        void merge(Stats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] += other.outcomes[i];
+            }
+        }
+
+        void print(String operation, long durationSeconds) {
+            Arrays.sort(latencies, 0, count);
+            System.out.printf("%-16s %9d %9.1f %9d %9d %7d %9.2f %9.2f %9.2f %9.2f%n", operation, count,
+                    (double) count / durationSeconds, outcomes[Outcome.ACCEPTED.ordinal()],
+                    outcomes[Outcome.REJECTED.ordinal()], outcomes[Outcome.ERROR.ordinal()],
+                    percentile(0.50), percentile(0.95), percentile(0.99), percentile(1.0));
+        }
+
+        private double percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.Message;
+import com.vmware.gerrit.plugins.commitvalidator.entities.MessageEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryKind;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryType;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the error report shown to the uploader for a given number of failed entries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBenchmark {
+    @Param({"4", "32", "256"})
+    public int entryCount;
+
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        TemplateEntryKind[] kinds = TemplateEntryKind.values();
+        TemplateEntryValidationStatus[] statuses = {TemplateEntryValidationStatus.MISSING_KEY,
+                TemplateEntryValidationStatus.MISSING_VALUE, TemplateEntryValidationStatus.INVALID_VALUE};
+        List<MessageEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            MessageEntry entry = new MessageEntry();
+            entry.setEntryName("Entry " + i);
+            entry.setKind(kinds[i % kinds.length]);
+            entry.setEntryType(TemplateEntryType.STRING);
+            entry.setExample(i % 2 == 0 ? "Example value " + i : null);
+            entry.setEntryValidationStatus(statuses[i % statuses.length]);
+            entry.setValidationMessage("No values matching '[A-Z]+-[0-9]+' format");
+            entry.setActualValues(Arrays.asList("value " + i));
+            entries.add(entry);
+        }
+        message = new Message(entries);
+    }
+
+    @Benchmark
+    public String render() {
+        return message.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package com.vmware.gerrit.plugins.commitvalidator.benchmarks;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import org.eclipse.jgit.lib.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a commit template with a given number of entries and commit messages that do or do
+ * not satisfy it. The template mixes one Jira subject entry, body pattern entries and key-value
+ * entries of all types, like the templates used in production.
+ */
+public class SyntheticTemplate {
+    public static final String TEMPLATE_NAME = "bench";
+    public static final String ENDPOINT_NAME = "bench";
+    public static final String ISSUE_ID = "BENCH-1234";
+
+    /**
+     * How expensive the value patterns of the template are to match
+     */
+    public enum RegexComplexity {
+        SIMPLE, MEDIUM, COMPLEX
+    }
+
+    private final int entryCount;
+    private final RegexComplexity complexity;
+    private final boolean endpointValidation;
+
+    public SyntheticTemplate(int entryCount, RegexComplexity complexity, boolean endpointValidation) {
+        this.entryCount = Math.max(1, entryCount);
+        this.complexity = complexity;
+        this.endpointValidation = endpointValidation;
+    }
+
+    /**
+     * Builds the global plugin config defining the endpoint, the entries and the template
+     *
+     * @param endpointUrl
+     * @return
+     */
+    public Config toPluginConfig(String endpointUrl) {
+        Config config = new Config();
+        config.setString(Constants.CONFIG_SECTION_JIRA_ENDPOINT, ENDPOINT_NAME, Constants.CONFIG_ENDPOINT_URL, endpointUrl);
+
+        List<String> entries = new ArrayList<>();
+        String jiraEntry = "jira-issue";
+        config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, jiraEntry, Constants.CONFIG_TEMPLATE_ENTRY_VALUE, jiraPattern());
+        config.setBoolean(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, jiraEntry,
+                Constants.CONFIG_TEMPLATE_ENTRY_VALIDATE_VAL_AGAINST_ENDPOINT, endpointValidation);
+        config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, jiraEntry, Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_TYPE, "JIRA");
+        config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, jiraEntry, Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_NAME, ENDPOINT_NAME);
+        config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, jiraEntry, Constants.CONFIG_TEMPLATE_ENTRY_ALLOWED_STATUS, "OPEN");
+        entries.add(jiraEntry);
+
+        for (int i = 1; i < entryCount; i++) {
+            String name = "entry-" + i;
+            if (i % 2 == 1) {
+                config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, name, Constants.CONFIG_TEMPLATE_ENTRY_KIND, "STR_BODY");
+                config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, name, Constants.CONFIG_TEMPLATE_ENTRY_VALUE, bodyPattern(i));
+            } else {
+                config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, name, Constants.CONFIG_TEMPLATE_ENTRY_KIND, "KEY_VAL");
+                config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, name, Constants.CONFIG_TEMPLATE_ENTRY_KEY, key(i));
+                config.setString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, name, Constants.CONFIG_TEMPLATE_ENTRY_TYPE, keyType(i));
+            }
+            entries.add(name);
+        }
+        config.setStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, TEMPLATE_NAME,
+                Constants.CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY, entries);
+        return config;
+    }
+
+    /**
+     * Builds a commit message with the given number of filler lines. An invalid message misses
+     * every second body entry and has wrong key-value values.
+     *
+     * @param fillerLines
+     * @param valid
+     * @return
+     */
+    public String commitMessage(int fillerLines, boolean valid) {
+        return commitMessage(fillerLines, valid, ISSUE_ID);
+    }
+
+    /**
+     * Builds a commit message referring to the given Jira issue
+     *
+     * @param fillerLines
+     * @param valid
+     * @param issueId
+     * @return
+     */
+    public String commitMessage(int fillerLines, boolean valid, String issueId) {
+        StringBuilder message = new StringBuilder();
+        message.append('[').append(issueId).append(']').append(" Synthetic change for benchmarking\n\n");
+        for (int i = 0; i < fillerLines; i++) {
+            message.append("Line ").append(i).append(" of the description explains what changed and why it was needed.\n");
+        }
+        message.append('\n');
+        for (int i = 1; i < entryCount; i++) {
+            if (i % 2 == 1) {
+                if (valid || i % 4 == 1) {
+                    message.append(bodyValue(i)).append('\n');
+                }
+            } else {
+                message.append(key(i)).append(": ").append(valid ? keyValue(i) : "not-a-value").append('\n');
+            }
+        }
+        message.append("\nChange-Id: I0123456789abcdef0123456789abcdef01234567\n");
+        return message.toString();
+    }
+
+    private String jiraPattern() {
+        switch (complexity) {
+            case COMPLEX:
+                return "\\[(?:BENCH|PROJ|CORE|INFRA)-[1-9][0-9]{0,6}\\](?=\\s)";
+            case MEDIUM:
+                return "\\[[A-Z][A-Z0-9]{1,9}-[0-9]{1,7}\\]";
+            case SIMPLE:
+            default:
+                return "\\[[A-Z]+-[0-9]+\\]";
+        }
+    }
+
+    private String bodyPattern(int i) {
+        switch (complexity) {
+            case COMPLEX:
+                return "Tag" + i + ": (?:alpha|beta|gamma|delta|epsilon|zeta|eta|theta)(?:[-_.][a-z0-9]+)*"
+                        + "(?: \\[[A-Z]{2,10}-[0-9]+\\])?";
+            case MEDIUM:
+                return "Tag" + i + ": (?:[a-z]+-)*[a-z]+ \\(#[0-9]{1,6}\\)";
+            case SIMPLE:
+            default:
+                return "Tag" + i + ": [a-z]+";
+        }
+    }
+
+    private String bodyValue(int i) {
+        switch (complexity) {
+            case COMPLEX:
+                return "Tag" + i + ": gamma-rc1.build_42 [CORE-77]";
+            case MEDIUM:
+                return "Tag" + i + ": storage-layer-cleanup (#4711)";
+            case SIMPLE:
+            default:
+                return "Tag" + i + ": cleanup";
+        }
+    }
+
+    private static String key(int i) {
+        return "Key " + i;
+    }
+
+    private static String keyType(int i) {
+        switch (i % 6) {
+            case 0:
+                return "BOOLEAN";
+            case 2:
+                return "INTEGER";
+            default:
+                return "STRING";
+        }
+    }
+
+    private static String keyValue(int i) {
+        switch (i % 6) {
+            case 0:
+                return "true";
+            case 2:
+                return String.valueOf(i);
+            default:
+                return "value " + i;
+        }
+    }
+}
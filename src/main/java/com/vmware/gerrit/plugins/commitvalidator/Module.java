@@ -1,17 +1,44 @@
 package com.vmware.gerrit.plugins.commitvalidator;
 
 import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.server.git.ReceivePackInitializer;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.rules.SubmitRule;
 import com.google.inject.AbstractModule;
 import com.vmware.gerrit.plugins.commitvalidator.listeners.CommitValidator;
+import com.vmware.gerrit.plugins.commitvalidator.listeners.GroupMembershipListener;
 import com.vmware.gerrit.plugins.commitvalidator.rules.SubmitRules;
+import com.vmware.gerrit.plugins.commitvalidator.utils.EndpointExecutor;
+import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraClientRegistry;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraIssueStatusCache;
+import com.vmware.gerrit.plugins.commitvalidator.utils.PluginWarmup;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ReceiveSessions;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ValidationLogFile;
+import org.eclipse.jgit.transport.PostReceiveHook;
 
 public class Module extends AbstractModule {
     @Override
     protected void configure() {
+        install(JiraIssueStatusCache.module());
+        install(GerritUtils.module());
+        install(SubmitRules.module());
+        install(new LifecycleModule() {
+            @Override
+            protected void configure() {
+                listener().to(JiraClientRegistry.class);
+                listener().to(EndpointExecutor.class);
+                listener().to(ValidationLogFile.class);
+                listener().to(PluginWarmup.class);
+            }
+        });
         DynamicSet.bind(binder(), CommitValidationListener.class).to(CommitValidator.class);
+        DynamicSet.bind(binder(), GroupIndexedListener.class).to(GroupMembershipListener.class);
+        DynamicSet.bind(binder(), ReceivePackInitializer.class).to(ReceiveSessions.class);
+        DynamicSet.bind(binder(), PostReceiveHook.class).to(ReceiveSessions.class);
         bind(SubmitRule.class).annotatedWith(Exports.named("commit-validator")).to(SubmitRules.class);
     }
 }
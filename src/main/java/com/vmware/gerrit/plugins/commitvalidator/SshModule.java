@@ -0,0 +1,11 @@
+package com.vmware.gerrit.plugins.commitvalidator;
+
+import com.google.gerrit.sshd.PluginCommandModule;
+import com.vmware.gerrit.plugins.commitvalidator.commands.AuditHistoryCommand;
+
+public class SshModule extends PluginCommandModule {
+    @Override
+    protected void configureCommands() {
+        command(AuditHistoryCommand.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.vmware.gerrit.plugins.commitvalidator.commands;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.entities.AuditReport;
+import com.vmware.gerrit.plugins.commitvalidator.entities.CommitTemplate;
+import com.vmware.gerrit.plugins.commitvalidator.utils.HistoryAuditor;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports how well the existing history of a project complies with a commit template, e.g.
+ * before enabling validation for it. Nothing is changed in the project.
+ */
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+@CommandMetaData(name = "audit-history", description = "Validate the existing history of a project against a commit template")
+public class AuditHistoryCommand extends SshCommand {
+    @Argument(index = 0, required = true, metaVar = "PROJECT", usage = "project to audit")
+    private String projectName;
+
+    @Option(name = "--template", required = true, metaVar = "NAME", usage = "commit template to validate against")
+    private String templateName;
+
+    @Option(name = "--branch", metaVar = "BRANCH", usage = "branch to audit, can be repeated (default: all branches)")
+    private List<String> branches = new ArrayList<>();
+
+    @Option(name = "--skip-endpoints", usage = "check values against the entry patterns only, not against endpoints")
+    private boolean skipEndpoints;
+
+    @Option(name = "--include-merges", usage = "validate merge commits too")
+    private boolean includeMerges;
+
+    @Option(name = "--threads", metaVar = "N", usage = "number of threads validating commits (default: number of cores)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "--max-commits", metaVar = "N", usage = "stop after validating N commits (default: no limit)")
+    private long maxCommits;
+
+    @Inject
+    private GitRepositoryManager repositoryManager;
+    @Inject
+    private CommitValidatorConfig pluginConfig;
+    @Inject
+    private HistoryAuditor historyAuditor;
+
+    @Override
+    protected void run() throws Exception {
+        CommitTemplate commitTemplate = pluginConfig.getCommitTemplate(templateName);
+        if (commitTemplate == null) {
+            throw die(String.format("Commit template %s is not defined in the plugin config", templateName));
+        }
+        if (threads < 1) {
+            throw die("--threads must be at least 1");
+        }
+
+        try (Repository repository = repositoryManager.openRepository(Project.nameKey(projectName))) {
+            List<ObjectId> starts = new ArrayList<>();
+            if (branches.isEmpty()) {
+                for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+                    starts.add(ref.getObjectId());
+                }
+            } else {
+                for (String branch : branches) {
+                    Ref ref = repository.exactRef(branch.startsWith(Constants.R_REFS) ? branch : Constants.R_HEADS + branch);
+                    if (ref == null) {
+                        throw die(String.format("Branch %s not found in project %s", branch, projectName));
+                    }
+                    starts.add(ref.getObjectId());
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            AuditReport report = historyAuditor.audit(repository, starts, commitTemplate, !skipEndpoints,
+                    includeMerges, threads, maxCommits);
+            stdout.print(report);
+            stdout.printf("%nAudited in %d ms%n", System.currentTimeMillis() - start);
+        } catch (RepositoryNotFoundException e) {
+            throw die(String.format("Project %s not found", projectName));
+        }
+    }
+}
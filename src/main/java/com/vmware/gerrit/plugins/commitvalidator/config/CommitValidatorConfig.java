@@ -1,27 +1,87 @@
 package com.vmware.gerrit.plugins.commitvalidator.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.project.NoSuchProjectException;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.RefPatternMatcher;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 @Slf4j
+@Singleton
 public class CommitValidatorConfig {
-    private PluginConfigFactory cfg;
-
-    public CommitValidatorConfig(PluginConfigFactory cfg) {
+    // Rules of projects and plans of refs that are no longer pushed to are dropped
+    private static final long MAX_CACHED_PROJECTS = 8192;
+    private static final long MAX_CACHED_REFS_PER_PROJECT = 256;
+    private static final long MAX_IDLE_MINUTES = 60;
+
+    private final PluginConfigFactory cfg;
+    private final ProjectCache projectCache;
+    private final AtomicReference<ConfigSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Cache<Project.NameKey, CachedProjectRules> projectRules = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PROJECTS)
+            .expireAfterAccess(MAX_IDLE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    @Inject
+    public CommitValidatorConfig(PluginConfigFactory cfg, ProjectCache projectCache) {
         this.cfg = cfg;
+        this.projectCache = projectCache;
+    }
+
+    /**
+     * Returns the current config snapshot. The snapshot is rebuilt only when Gerrit hands out a
+     * different commit-validator.config instance, i.e. after the file was reloaded.
+     *
+     * @return
+     */
+    public ConfigSnapshot getSnapshot() {
+        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
+        ConfigSnapshot current = snapshot.get();
+        while (current == null || current.getSource() != pluginConfig) {
+            ConfigSnapshot rebuilt = buildSnapshot(pluginConfig, current);
+            if (snapshot.compareAndSet(current, rebuilt)) {
+                log.info("Loaded plugin config snapshot version {}", rebuilt.getVersion());
+                return rebuilt;
+            }
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+    private ConfigSnapshot buildSnapshot(Config pluginConfig, ConfigSnapshot previous) {
+        long version = versions.incrementAndGet();
+        try {
+            return ConfigSnapshot.build(pluginConfig, version);
+        } catch (IllegalArgumentException e) {
+            // Do not block pushes on config issues. Keep the last valid definitions if there are any.
+            log.error("Rejecting invalid plugin config, {}: {}",
+                    previous == null ? "no commit templates are applied" : "keeping the previous definitions",
+                    e.getMessage());
+            return previous == null ? ConfigSnapshot.empty(pluginConfig, version) : previous.reuseFor(pluginConfig, version);
+        }
     }
 
     /**
@@ -34,27 +94,7 @@ public class CommitValidatorConfig {
         if (StringUtils.isEmpty(endpointName)) {
             return null;
         }
-
-        // Check whether endpoint exists
-        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> endpointKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, true);
-
-        if (endpointKeys.isEmpty()) {
-            return null; // Endpoint doesn't exist
-        }
-
-        // Read Jira endpoint values
-        String serverUrl = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, Constants.CONFIG_ENDPOINT_URL);
-        String username = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
-                Constants.CONFIG_ENDPOINT_USERNAME);
-        String password = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
-                Constants.CONFIG_ENDPOINT_PASSWORD);
-
-        return new JiraEndpoint(serverUrl, username, password);
+        return getSnapshot().getJiraEndpoints().get(endpointName);
     }
 
     /**
@@ -67,30 +107,7 @@ public class CommitValidatorConfig {
         if (StringUtils.isEmpty(templateName)) {
             return null;
         }
-
-        // Check whether template exists
-        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> templateKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName, true);
-
-        if (templateKeys.isEmpty()) {
-            return null; // Template doesn't exist
-        }
-
-        // Read template values
-        String[] mandatoryTemplateEntriesList = pluginConfig
-                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
-                        Constants.CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY);
-        String[] optionalTemplateEntriesList = pluginConfig
-                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
-                        Constants.CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY);
-
-        // Fetch all template entries
-        List<TemplateEntry> mandatoryTemplateFields = Arrays.asList(mandatoryTemplateEntriesList).stream()
-                .map(entryName -> getTemplateEntry(entryName)).collect(Collectors.toList());
-        List<TemplateEntry> optionalTemplateFields = Arrays.asList(optionalTemplateEntriesList).stream()
-                .map(entryName -> getTemplateEntry(entryName)).collect(Collectors.toList());
-        return new CommitTemplate(mandatoryTemplateFields, optionalTemplateFields);
+        return getSnapshot().getCommitTemplates().get(templateName);
     }
 
     /**
@@ -103,89 +120,89 @@ public class CommitValidatorConfig {
         if (StringUtils.isEmpty(entryName)) {
             return null;
         }
+        return getSnapshot().getTemplateEntries().get(entryName);
+    }
 
-        // Check whether template entry exists
-        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> templateEntryKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName, true);
 
-        if (templateEntryKeys.isEmpty()) {
-            return null; // Template entry doesn't exist
+    /**
+     * Fetches the validation plan for given project and ref, null if no rules apply to the ref.
+     * Project rules are read once per project config revision, including settings inherited from
+     * parent projects, and plans are reused until the refs/meta/config of the project or one of
+     * its parents changes. Only the rules of recently used projects and refs are kept.
+     *
+     * @param projectNameKey
+     * @param refName        full ref name, e.g. refs/heads/master
+     * @return
+     * @throws NoSuchProjectException
+     */
+    public ValidationPlan getValidationPlan(Project.NameKey projectNameKey, String refName) throws NoSuchProjectException {
+        if (StringUtils.isEmpty(refName)) {
+            return null;
         }
 
-        // Read template entry values
-        String kindStr = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_KIND);
-        TemplateEntryKind kind = TemplateEntryKind.STR_SUB; // Default value;
-        if (StringUtils.isNotEmpty(kindStr)) {
-            kind = TemplateEntryKind.valueOf(kindStr.toUpperCase());
+        ProjectState projectState = projectCache.get(projectNameKey);
+        if (projectState == null) {
+            throw new NoSuchProjectException(projectNameKey);
         }
-        String key = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_KEY);
-        String value = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_VALUE);
-
-        String sampleValue = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_SAMPLE_VALUE);
-        String templateEntryTypeStr = pluginConfig
-                .getString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                        Constants.CONFIG_TEMPLATE_ENTRY_TYPE);
-        TemplateEntryType type = TemplateEntryType.STRING; // Default value
-        if (StringUtils.isNotEmpty(templateEntryTypeStr)) {
-            type = TemplateEntryType.valueOf(templateEntryTypeStr.toUpperCase());
-        }
-        boolean validateValAgainstEndpoint = pluginConfig
-                .getBoolean(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                        Constants.CONFIG_TEMPLATE_ENTRY_VALIDATE_VAL_AGAINST_ENDPOINT, false);
-        String endpointTypeStr = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_TYPE);
-        EndpointType endpointType = null;
-        if (StringUtils.isNotEmpty(endpointTypeStr)) {
-            endpointType = EndpointType.valueOf(endpointTypeStr.toUpperCase());
-        }
-
-        String endpointName = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_NAME);
 
-        String[] allowedStatuses = ArrayUtils.nullToEmpty(pluginConfig.getStringList(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ALLOWED_STATUS));
+        List<ObjectId> configRevisions = getConfigRevisions(projectState);
+        CachedProjectRules cached = projectRules.getIfPresent(projectNameKey);
+        if (cached == null || !cached.configRevisions.equals(configRevisions)) {
+            cached = readProjectRules(projectState, configRevisions);
+            projectRules.put(projectNameKey, cached);
+        }
 
-        return new TemplateEntry(entryName, kind, type, key, value, sampleValue, validateValAgainstEndpoint,
-                endpointType, endpointName, Arrays.asList(allowedStatuses));
+        // Plans of matching refs also depend on the commit templates of the plugin config
+        ConfigSnapshot current = getSnapshot();
+        Optional<ValidationPlan> plan = cached.plans.getIfPresent(refName);
+        if (plan == null || (plan.isPresent() && plan.get().getConfigVersion() != current.getVersion())) {
+            plan = Optional.ofNullable(buildPlan(cached, refName, current));
+            cached.plans.put(refName, plan);
+        }
+        return plan.orElse(null);
     }
 
     /**
-     * Fetches configured rules for given project and branch
+     * Returns the refs/meta/config revisions of the project and its parents. The cached rules are
+     * current as long as none of them changed.
      *
-     * @param projectNameKey
-     * @param branchName
+     * @param projectState
      * @return
-     * @throws NoSuchProjectException
      */
-    public ProjectRules getProjectRules(Project.NameKey projectNameKey, String branchName) throws NoSuchProjectException {
-        if (StringUtils.isEmpty(branchName)) {
+    private static List<ObjectId> getConfigRevisions(ProjectState projectState) {
+        List<ObjectId> revisions = new ArrayList<>();
+        revisions.add(getConfigRevision(projectState));
+        for (ProjectState parent : projectState.parents()) {
+            revisions.add(getConfigRevision(parent));
+        }
+        return revisions;
+    }
+
+    private static ObjectId getConfigRevision(ProjectState projectState) {
+        // Copied, so the cache does not keep the parsed commit alive
+        ObjectId revision = projectState.getConfig().getRevision();
+        return revision != null ? revision.copy() : null;
+    }
+
+    private ValidationPlan buildPlan(CachedProjectRules cached, String refName, ConfigSnapshot current) {
+        // Rules only apply to the configured branches
+        if (!cached.branches.matches(refName)) {
             return null;
         }
+        String templateName = cached.rules.getCommitTemplate();
+        CommitTemplate commitTemplate = StringUtils.isEmpty(templateName) ? null
+                : current.getCommitTemplates().get(templateName);
+        return new ValidationPlan(cached.rules, commitTemplate, current.getVersion());
+    }
 
-        // Read project rules
-        PluginConfig pluginConfig = cfg.getFromProjectConfig(projectNameKey, Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION);
+    private CachedProjectRules readProjectRules(ProjectState projectState, List<ObjectId> configRevisions) {
+        // Read project rules, unset values are taken from the parent projects
+        PluginConfig pluginConfig = cfg.getFromProjectConfigWithInheritance(projectState,
+                Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION);
         boolean enabled = pluginConfig.getBoolean(Constants.CONFIG_ENABLED, true);
         String[] branches = pluginConfig.getStringList(
                 Constants.CONFIG_PROJECT_RULES_BRANCH);
 
-        // If the branches are configured and given branch is not found, return nil.
-        // If no branch is configured, consider it as for all branches of the repo.
-        if (branches != null && !Arrays.asList(branches).contains(branchName)) {
-            return null;
-        }
-
         String commitTemplate = pluginConfig.getString(Constants.CONFIG_PROJECT_RULES_COMMIT_TEMPLATE);
         String[] skipTemplateValidationForAuthors = ArrayUtils.nullToEmpty(
                 pluginConfig.getStringList(Constants.CONFIG_PROJECT_RULES_SKIP_TEMPLATE_VALIDATION_AUTHOR));
@@ -196,9 +213,23 @@ public class CommitValidatorConfig {
         String[] additionalCodeReviewApprovers = ArrayUtils.nullToEmpty(
                 pluginConfig.getStringList(Constants.CONFIG_PROJECT_RULES_ADDITIONAL_CR_APPROVERS));
 
-        return new ProjectRules(enabled, commitTemplate, Arrays.asList(skipTemplateValidationForAuthors),
+        ProjectRules rules = new ProjectRules(enabled, commitTemplate, Arrays.asList(skipTemplateValidationForAuthors),
                 Arrays.asList(skipTemplateValidationForCommitters),
                 Arrays.asList(additionalCRApprovalConditions),
-                Arrays.asList(additionalCodeReviewApprovers));
+                Arrays.asList(additionalCodeReviewApprovers), versions.incrementAndGet());
+        return new CachedProjectRules(configRevisions,
+                RefPatternMatcher.compile(Arrays.asList(ArrayUtils.nullToEmpty(branches))),
+                rules, CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_REFS_PER_PROJECT)
+                .expireAfterAccess(MAX_IDLE_MINUTES, TimeUnit.MINUTES)
+                .build());
+    }
+
+    @AllArgsConstructor
+    private static class CachedProjectRules {
+        private final List<ObjectId> configRevisions;
+        private final RefPatternMatcher branches;
+        private final ProjectRules rules;
+        private final Cache<String, Optional<ValidationPlan>> plans;
     }
-}
\ No newline at end of file
+}
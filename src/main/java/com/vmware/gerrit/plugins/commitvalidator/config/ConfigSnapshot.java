@@ -0,0 +1,273 @@
+package com.vmware.gerrit.plugins.commitvalidator.config;
+
+import com.google.gerrit.server.config.ConfigUtil;
+import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.KeyTrie;
+import com.vmware.gerrit.plugins.commitvalidator.utils.MultiPatternMatcher;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.Config;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of everything defined in etc/commit-validator.config.
+ * Built once per config load and shared by all concurrent validations.
+ */
+@Slf4j
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ConfigSnapshot {
+    private final Config source;
+    private final long version;
+    private final Map<String, JiraEndpoint> jiraEndpoints;
+    private final Map<String, TemplateEntry> templateEntries;
+    private final Map<String, CommitTemplate> commitTemplates;
+    // Time budget of one commit validation, in milliseconds
+    private final long validationTimeout;
+    // How long after the push an unverified value is checked again, in milliseconds
+    private final long recheckDelay;
+    // Percentage of accepted and skipped validations written to the validation log
+    private final int logSampleRate;
+    // Whether a validation stops at the first missing or invalid entry
+    private final boolean failFast;
+
+    /**
+     * Parses all endpoints, template entries and commit templates from given plugin config
+     *
+     * @throws IllegalArgumentException if an entry has an invalid kind, type or value pattern,
+     *                                  or an endpoint has an unknown failure policy or breaker fallback
+     * @param pluginConfig
+     * @param version
+     * @return
+     */
+    public static ConfigSnapshot build(Config pluginConfig, long version) {
+        Map<String, TemplateEntry> templateEntries = new HashMap<>();
+        for (String entryName : pluginConfig.getSubsections(Constants.CONFIG_SECTION_TEMPLATE_ENTRY)) {
+            templateEntries.put(entryName, readTemplateEntry(pluginConfig, entryName));
+        }
+
+        // Endpoints may be defined only in the secure config, which is not visible through
+        // getSubsections(), so also look up every endpoint referenced by a template entry.
+        Set<String> endpointNames = new HashSet<>(pluginConfig.getSubsections(Constants.CONFIG_SECTION_JIRA_ENDPOINT));
+        templateEntries.values().stream()
+                .filter(entry -> entry.getEndpointType() == EndpointType.JIRA && StringUtils.isNotEmpty(entry.getEndpointName()))
+                .forEach(entry -> endpointNames.add(entry.getEndpointName()));
+        Map<String, JiraEndpoint> jiraEndpoints = new HashMap<>();
+        for (String endpointName : endpointNames) {
+            JiraEndpoint endpoint = readJiraEndpoint(pluginConfig, endpointName);
+            if (StringUtils.isNotEmpty(endpoint.getUrl())) {
+                jiraEndpoints.put(endpointName, endpoint);
+            }
+        }
+
+        Map<String, CommitTemplate> commitTemplates = new HashMap<>();
+        for (String templateName : pluginConfig.getSubsections(Constants.CONFIG_SECTION_COMMIT_TEMPLATE)) {
+            commitTemplates.put(templateName, readCommitTemplate(pluginConfig, templateName, templateEntries));
+        }
+
+        long validationTimeout = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_VALIDATION, null, Constants.CONFIG_VALIDATION_TIMEOUT,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_VALIDATION_TIMEOUT_SECONDS), TimeUnit.MILLISECONDS);
+        long recheckDelay = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_VALIDATION, null, Constants.CONFIG_VALIDATION_RECHECK_DELAY,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_VALIDATION_RECHECK_DELAY_SECONDS), TimeUnit.MILLISECONDS);
+        int logSampleRate = Math.max(0, Math.min(100, pluginConfig.getInt(Constants.CONFIG_SECTION_VALIDATION,
+                Constants.CONFIG_VALIDATION_LOG_SAMPLE_RATE, Constants.DEFAULT_VALIDATION_LOG_SAMPLE_RATE)));
+        boolean failFast = pluginConfig.getBoolean(Constants.CONFIG_SECTION_VALIDATION,
+                Constants.CONFIG_VALIDATION_FAIL_FAST, false);
+
+        return new ConfigSnapshot(pluginConfig, version,
+                Collections.unmodifiableMap(jiraEndpoints),
+                Collections.unmodifiableMap(templateEntries),
+                Collections.unmodifiableMap(commitTemplates),
+                validationTimeout, recheckDelay, logSampleRate, failFast);
+    }
+
+    /**
+     * Returns a copy of this snapshot that is associated with another config source. Used to keep
+     * serving the last valid config when a reloaded one cannot be parsed.
+     *
+     * @param pluginConfig
+     * @param version
+     * @return
+     */
+    public ConfigSnapshot reuseFor(Config pluginConfig, long version) {
+        return new ConfigSnapshot(pluginConfig, version, jiraEndpoints, templateEntries, commitTemplates,
+                validationTimeout, recheckDelay, logSampleRate, failFast);
+    }
+
+    /**
+     * Returns a snapshot without any definitions
+     *
+     * @param pluginConfig
+     * @param version
+     * @return
+     */
+    public static ConfigSnapshot empty(Config pluginConfig, long version) {
+        return new ConfigSnapshot(pluginConfig, version, Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), TimeUnit.SECONDS.toMillis(Constants.DEFAULT_VALIDATION_TIMEOUT_SECONDS),
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_VALIDATION_RECHECK_DELAY_SECONDS),
+                Constants.DEFAULT_VALIDATION_LOG_SAMPLE_RATE, false);
+    }
+
+    private static JiraEndpoint readJiraEndpoint(Config pluginConfig, String endpointName) {
+        String serverUrl = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, Constants.CONFIG_ENDPOINT_URL);
+        String username = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_USERNAME);
+        String password = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_PASSWORD);
+        long notFoundCacheTtl = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_NOT_FOUND_CACHE_TTL,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_ENDPOINT_NOT_FOUND_CACHE_TTL_SECONDS), TimeUnit.MILLISECONDS);
+        int maxConnections = pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_MAX_CONNECTIONS, Constants.DEFAULT_ENDPOINT_MAX_CONNECTIONS);
+        long batchWindow = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BATCH_WINDOW,
+                Constants.DEFAULT_ENDPOINT_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        int batchSize = Math.max(1, pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BATCH_SIZE, Constants.DEFAULT_ENDPOINT_BATCH_SIZE));
+        long connectTimeout = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CONNECT_TIMEOUT,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_ENDPOINT_CONNECT_TIMEOUT_SECONDS), TimeUnit.MILLISECONDS);
+        long readTimeout = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_READ_TIMEOUT,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_ENDPOINT_READ_TIMEOUT_SECONDS), TimeUnit.MILLISECONDS);
+        EndpointFailurePolicy failurePolicy = pluginConfig.getEnum(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_FAILURE_POLICY, EndpointFailurePolicy.REJECT);
+        int breakerWindow = Math.max(0, pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BREAKER_WINDOW, Constants.DEFAULT_ENDPOINT_BREAKER_WINDOW));
+        int breakerFailureRate = Math.min(100, Math.max(1, pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BREAKER_FAILURE_RATE, Constants.DEFAULT_ENDPOINT_BREAKER_FAILURE_RATE)));
+        long breakerSlowCallThreshold = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BREAKER_SLOW_CALL_THRESHOLD,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_ENDPOINT_BREAKER_SLOW_CALL_THRESHOLD_SECONDS), TimeUnit.MILLISECONDS);
+        long breakerOpenDuration = ConfigUtil.getTimeUnit(pluginConfig,
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BREAKER_OPEN_DURATION,
+                TimeUnit.SECONDS.toMillis(Constants.DEFAULT_ENDPOINT_BREAKER_OPEN_DURATION_SECONDS), TimeUnit.MILLISECONDS);
+        CircuitBreakerFallback breakerFallback = pluginConfig.getEnum(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BREAKER_FALLBACK, CircuitBreakerFallback.CACHED);
+
+        return new JiraEndpoint(endpointName, serverUrl, username, password, notFoundCacheTtl, maxConnections,
+                batchWindow, batchSize, (int) Math.min(connectTimeout, Integer.MAX_VALUE),
+                (int) Math.min(readTimeout, Integer.MAX_VALUE), failurePolicy, breakerWindow, breakerFailureRate,
+                breakerSlowCallThreshold, breakerOpenDuration, breakerFallback);
+    }
+
+    private static CommitTemplate readCommitTemplate(Config pluginConfig, String templateName,
+                                                     Map<String, TemplateEntry> templateEntries) {
+        String[] mandatoryTemplateEntriesList = pluginConfig
+                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
+                        Constants.CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY);
+        String[] optionalTemplateEntriesList = pluginConfig
+                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
+                        Constants.CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY);
+
+        List<TemplateEntry> mandatoryTemplateFields = resolveTemplateEntries(templateName, mandatoryTemplateEntriesList, templateEntries);
+        List<TemplateEntry> optionalTemplateFields = resolveTemplateEntries(templateName, optionalTemplateEntriesList, templateEntries);
+        List<String> keys = new ArrayList<>();
+        for (List<TemplateEntry> entries : Arrays.asList(mandatoryTemplateFields, optionalTemplateFields)) {
+            entries.stream().filter(entry -> entry.getKind() == TemplateEntryKind.KEY_VAL)
+                    .forEach(entry -> keys.add(entry.getKey()));
+        }
+        MultiPatternMatcher subjectMatcher = MultiPatternMatcher.of(mandatoryTemplateFields.stream()
+                .filter(entry -> entry.getKind() == TemplateEntryKind.STR_SUB).collect(Collectors.toList()));
+        MultiPatternMatcher bodyMatcher = MultiPatternMatcher.of(mandatoryTemplateFields.stream()
+                .filter(entry -> entry.getKind() == TemplateEntryKind.STR_BODY).collect(Collectors.toList()));
+        return new CommitTemplate(Collections.unmodifiableList(mandatoryTemplateFields),
+                Collections.unmodifiableList(optionalTemplateFields), KeyTrie.of(keys), subjectMatcher, bodyMatcher);
+    }
+
+    private static List<TemplateEntry> resolveTemplateEntries(String templateName, String[] entryNames,
+                                                              Map<String, TemplateEntry> templateEntries) {
+        return Arrays.stream(entryNames).filter(entryName -> {
+            if (!templateEntries.containsKey(entryName)) {
+                log.warn("Commit template {} refers to unknown template entry {}, ignoring it", templateName, entryName);
+                return false;
+            }
+            return true;
+        }).map(templateEntries::get).collect(Collectors.toList());
+    }
+
+    private static TemplateEntry readTemplateEntry(Config pluginConfig, String entryName) {
+        String kindStr = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_KIND);
+        TemplateEntryKind kind = TemplateEntryKind.STR_SUB; // Default value;
+        if (StringUtils.isNotEmpty(kindStr)) {
+            kind = TemplateEntryKind.valueOf(kindStr.toUpperCase());
+        }
+        String key = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_KEY);
+        String value = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_VALUE);
+
+        String sampleValue = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_SAMPLE_VALUE);
+        String templateEntryTypeStr = pluginConfig
+                .getString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                        Constants.CONFIG_TEMPLATE_ENTRY_TYPE);
+        TemplateEntryType type = TemplateEntryType.STRING; // Default value
+        if (StringUtils.isNotEmpty(templateEntryTypeStr)) {
+            type = TemplateEntryType.valueOf(templateEntryTypeStr.toUpperCase());
+        }
+        boolean validateValAgainstEndpoint = pluginConfig
+                .getBoolean(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                        Constants.CONFIG_TEMPLATE_ENTRY_VALIDATE_VAL_AGAINST_ENDPOINT, false);
+        String endpointTypeStr = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_TYPE);
+        EndpointType endpointType = null;
+        if (StringUtils.isNotEmpty(endpointTypeStr)) {
+            endpointType = EndpointType.valueOf(endpointTypeStr.toUpperCase());
+        }
+
+        String endpointName = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_NAME);
+
+        String[] allowedStatuses = ArrayUtils.nullToEmpty(pluginConfig.getStringList(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ALLOWED_STATUS));
+
+        // Compile the value pattern up front so an invalid regex rejects the config instead of the push
+        Pattern valuePattern = null;
+        if (StringUtils.isNotEmpty(value)) {
+            try {
+                valuePattern = Pattern.compile(value.trim());
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException(String.format(
+                        "Template entry %s has an invalid value pattern: %s", entryName, e.getMessage()), e);
+            }
+        }
+
+        return new TemplateEntry(entryName, kind, type, key, value, sampleValue, validateValAgainstEndpoint,
+                endpointType, endpointName, Collections.unmodifiableList(Arrays.asList(allowedStatuses)), valuePattern);
+    }
+}
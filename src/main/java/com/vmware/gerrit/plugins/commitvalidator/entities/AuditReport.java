@@ -0,0 +1,116 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregated result of validating existing commits against a commit template. Each audit worker
+ * fills its own report; the reports are merged when the audit is done.
+ */
+@Getter
+public class AuditReport {
+    // Non-compliant commits listed in the report as examples
+    public static final int SAMPLE_SIZE = 20;
+
+    private long commits;
+    private long compliantCommits;
+    private long skippedMerges;
+    private long unreadableCommits;
+    // Commits whose validation failed with an unexpected error
+    private long failedCommits;
+    private long unverifiedValues;
+    // Entry name to number of commits per failure
+    private final Map<String, Map<TemplateEntryValidationStatus, Long>> entryFailures = new TreeMap<>();
+    private final List<String> samples = new ArrayList<>();
+
+    /**
+     * Adds the result of one commit
+     *
+     * @param commit
+     * @param subject
+     * @param validationErrors
+     */
+    public void add(String commit, String subject, List<MessageEntry> validationErrors) {
+        commits++;
+        if (validationErrors.isEmpty()) {
+            compliantCommits++;
+            return;
+        }
+        for (MessageEntry error : validationErrors) {
+            entryFailures.computeIfAbsent(error.getEntryName(), name -> new EnumMap<>(TemplateEntryValidationStatus.class))
+                    .merge(error.getEntryValidationStatus(), 1L, Long::sum);
+        }
+        if (samples.size() < SAMPLE_SIZE) {
+            samples.add(commit + " " + subject);
+        }
+    }
+
+    public void addSkippedMerge() {
+        skippedMerges++;
+    }
+
+    public void addUnreadable() {
+        unreadableCommits++;
+    }
+
+    public void addFailed() {
+        failedCommits++;
+    }
+
+    public void addUnverifiedValues(long count) {
+        unverifiedValues += count;
+    }
+
+    /**
+     * Adds the counts of another report to this one
+     *
+     * @param other
+     */
+    public void merge(AuditReport other) {
+        commits += other.commits;
+        compliantCommits += other.compliantCommits;
+        skippedMerges += other.skippedMerges;
+        unreadableCommits += other.unreadableCommits;
+        failedCommits += other.failedCommits;
+        unverifiedValues += other.unverifiedValues;
+        other.entryFailures.forEach((entry, failures) -> {
+            Map<TemplateEntryValidationStatus, Long> merged = entryFailures.computeIfAbsent(entry,
+                    name -> new EnumMap<>(TemplateEntryValidationStatus.class));
+            failures.forEach((status, count) -> merged.merge(status, count, Long::sum));
+        });
+        for (String sample : other.samples) {
+            if (samples.size() >= SAMPLE_SIZE) {
+                break;
+            }
+            samples.add(sample);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        long nonCompliant = commits - compliantCommits;
+        report.append(String.format("Commits audited:      %d%n", commits));
+        report.append(String.format("Compliant:            %d (%.1f%%)%n", compliantCommits,
+                commits == 0 ? 100.0 : compliantCommits * 100.0 / commits));
+        report.append(String.format("Non-compliant:        %d%n", nonCompliant));
+        report.append(String.format("Merges skipped:       %d%n", skippedMerges));
+        report.append(String.format("Unreadable commits:   %d%n", unreadableCommits));
+        report.append(String.format("Failed commits:       %d%n", failedCommits));
+        report.append(String.format("Unverified values:    %d%n", unverifiedValues));
+        if (!entryFailures.isEmpty()) {
+            report.append(String.format("%nFailures per entry:%n"));
+            entryFailures.forEach((entry, failures) -> report.append(String.format("  %s: %s%n", entry, failures)));
+        }
+        if (!samples.isEmpty()) {
+            report.append(String.format("%nNon-compliant commits (first %d):%n", samples.size()));
+            samples.forEach(sample -> report.append(String.format("  %s%n", sample)));
+        }
+        return report.toString();
+    }
+}
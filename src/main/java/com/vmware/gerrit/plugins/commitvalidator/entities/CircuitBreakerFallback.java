@@ -0,0 +1,11 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+/**
+ * How issue lookups are answered while the circuit breaker of an endpoint is open
+ */
+public enum CircuitBreakerFallback {
+    // Use the last cached status if there is one, otherwise apply the endpoint's failure policy
+    CACHED,
+    // Apply the endpoint's failure policy right away
+    FAIL
+}
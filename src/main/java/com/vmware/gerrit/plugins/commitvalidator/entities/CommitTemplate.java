@@ -1,17 +1,25 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
+import com.vmware.gerrit.plugins.commitvalidator.utils.KeyTrie;
+import com.vmware.gerrit.plugins.commitvalidator.utils.MultiPatternMatcher;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 import java.util.List;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class CommitTemplate {
-    private List<TemplateEntry> mandatoryEntry;
-    private List<TemplateEntry> optionalEntry;
+    private final List<TemplateEntry> mandatoryEntry;
+    private final List<TemplateEntry> optionalEntry;
+    // Keys of all KEY_VAL entries, built when the config is loaded
+    @ToString.Exclude
+    private final KeyTrie keyTrie;
+    // Patterns of all mandatory STR_SUB and STR_BODY entries, built when the config is loaded
+    @ToString.Exclude
+    private final MultiPatternMatcher subjectMatcher;
+    @ToString.Exclude
+    private final MultiPatternMatcher bodyMatcher;
 }
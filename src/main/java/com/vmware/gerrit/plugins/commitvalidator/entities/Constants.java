@@ -8,6 +8,18 @@ public class Constants {
     public static final String CONFIG_SECTION_COMMIT_TEMPLATE = "commit-template";
     public static final String CONFIG_SECTION_PROJECT_RULES = "project-rules";
     public static final String CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION = "commit-validator";
+    public static final String CONFIG_SECTION_EXECUTOR = "executor";
+    public static final String CONFIG_EXECUTOR_THREADS = "threads";
+    public static final String CONFIG_EXECUTOR_QUEUE_SIZE = "queueSize";
+    public static final String CONFIG_EXECUTOR_AUDIT_THREADS = "auditThreads";
+    public static final String CONFIG_SECTION_VALIDATION = "validation";
+    public static final String CONFIG_VALIDATION_TIMEOUT = "timeout";
+    public static final String CONFIG_VALIDATION_RECHECK_DELAY = "recheckDelay";
+    public static final String CONFIG_VALIDATION_LOG_SAMPLE_RATE = "logSampleRate";
+    public static final String CONFIG_VALIDATION_FAIL_FAST = "failFast";
+    public static final String CONFIG_SECTION_WARMUP = "warmup";
+    public static final String CONFIG_WARMUP_CHANGES = "changes";
+    public static final String CONFIG_WARMUP_PREFETCH_ISSUES = "prefetchIssues";
     public static final String CONFIG_PROJECT_RULES_BRANCH = "branch";
     public static final String CONFIG_PROJECT_RULES_COMMIT_TEMPLATE = "commitTemplate";
     public static final String CONFIG_PROJECT_RULES_SKIP_TEMPLATE_VALIDATION_AUTHOR = "skipTemplateValidationForAuthors";
@@ -17,6 +29,18 @@ public class Constants {
     public static final String CONFIG_ENDPOINT_URL = "url";
     public static final String CONFIG_ENDPOINT_USERNAME = "username";
     public static final String CONFIG_ENDPOINT_PASSWORD = "password";
+    public static final String CONFIG_ENDPOINT_NOT_FOUND_CACHE_TTL = "notFoundCacheTtl";
+    public static final String CONFIG_ENDPOINT_MAX_CONNECTIONS = "maxConnections";
+    public static final String CONFIG_ENDPOINT_BATCH_WINDOW = "batchWindow";
+    public static final String CONFIG_ENDPOINT_BATCH_SIZE = "batchSize";
+    public static final String CONFIG_ENDPOINT_CONNECT_TIMEOUT = "connectTimeout";
+    public static final String CONFIG_ENDPOINT_READ_TIMEOUT = "readTimeout";
+    public static final String CONFIG_ENDPOINT_FAILURE_POLICY = "failurePolicy";
+    public static final String CONFIG_ENDPOINT_BREAKER_WINDOW = "circuitBreakerWindow";
+    public static final String CONFIG_ENDPOINT_BREAKER_FAILURE_RATE = "circuitBreakerFailureRate";
+    public static final String CONFIG_ENDPOINT_BREAKER_SLOW_CALL_THRESHOLD = "circuitBreakerSlowCallThreshold";
+    public static final String CONFIG_ENDPOINT_BREAKER_OPEN_DURATION = "circuitBreakerOpenDuration";
+    public static final String CONFIG_ENDPOINT_BREAKER_FALLBACK = "circuitBreakerFallback";
     public static final String CONFIG_ENABLED = "enabled";
     public static final String CONFIG_TEMPLATE_ENTRY_KIND = "kind";
     public static final String CONFIG_TEMPLATE_ENTRY_KEY = "key";
@@ -30,11 +54,31 @@ public class Constants {
     public static final String CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY = "mandatoryEntry";
     public static final String CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY = "optionalEntry";
     public static final String CONFIG_PROJECT = "project";
+    // Default values
+    public static final int DEFAULT_EXECUTOR_THREADS = 4;
+    public static final int DEFAULT_EXECUTOR_QUEUE_SIZE = 100;
+    public static final int DEFAULT_EXECUTOR_AUDIT_THREADS = 2;
+    public static final long DEFAULT_ENDPOINT_NOT_FOUND_CACHE_TTL_SECONDS = 60;
+    public static final int DEFAULT_ENDPOINT_MAX_CONNECTIONS = 16;
+    public static final long DEFAULT_ENDPOINT_BATCH_WINDOW_MILLIS = 10;
+    public static final int DEFAULT_ENDPOINT_BATCH_SIZE = 50;
+    public static final long DEFAULT_ENDPOINT_CONNECT_TIMEOUT_SECONDS = 5;
+    public static final long DEFAULT_ENDPOINT_READ_TIMEOUT_SECONDS = 10;
+    public static final long DEFAULT_VALIDATION_TIMEOUT_SECONDS = 10;
+    public static final int DEFAULT_ENDPOINT_BREAKER_WINDOW = 10;
+    public static final int DEFAULT_ENDPOINT_BREAKER_FAILURE_RATE = 50;
+    public static final long DEFAULT_ENDPOINT_BREAKER_SLOW_CALL_THRESHOLD_SECONDS = 5;
+    public static final long DEFAULT_ENDPOINT_BREAKER_OPEN_DURATION_SECONDS = 30;
+    public static final long DEFAULT_VALIDATION_RECHECK_DELAY_SECONDS = 60;
+    public static final int DEFAULT_VALIDATION_LOG_SAMPLE_RATE = 100;
+    public static final int DEFAULT_WARMUP_CHANGES = 100;
     // Message Constants
     public static final String MESSAGE_VALIDATION_EXCEPTION = "Either missing or invalid commit template values";
     public static final String LINE_BREAK_ASTERISK = "************************************************************";
     public static final String LINE_BREAK_HYPHEN = "------------------------------------------------------------";
     public static final String MESSAGE_MISSING_OR_INVALID_ENTRIES = "Following entries are either missing or have invalid values";
+    public static final String MESSAGE_FAIL_FAST = "Validation stopped at this entry, the remaining entries were not checked";
+    public static final String MESSAGE_TAG = "autogenerated:commit-validator";
 
     private Constants() {
         throw new IllegalStateException("Constants class");
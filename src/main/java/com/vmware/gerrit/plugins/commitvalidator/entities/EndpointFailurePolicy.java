@@ -0,0 +1,13 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+/**
+ * What happens to a push when an endpoint cannot answer within the validation timeout
+ */
+public enum EndpointFailurePolicy {
+    // Reject the push, same as an invalid value
+    REJECT,
+    // Accept the push with a warning
+    ACCEPT,
+    // Accept the push with a warning and comment on the change if a later check fails
+    RECHECK
+}
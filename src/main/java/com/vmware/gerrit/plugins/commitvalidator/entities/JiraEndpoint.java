@@ -2,15 +2,36 @@ package com.vmware.gerrit.plugins.commitvalidator.entities;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class JiraEndpoint {
-    private String url;
-    private String username;
-    private String password;
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+    // How long an "issue not found" result is cached, in milliseconds
+    private final long notFoundCacheTtl;
+    // Size of the keep-alive connection pool to this endpoint
+    private final int maxConnections;
+    // How long lookups are collected before a batch is sent, in milliseconds
+    private final long batchWindow;
+    // Maximum number of issues resolved by one batch
+    private final int batchSize;
+    // Timeouts of a single HTTP request, in milliseconds
+    private final int connectTimeout;
+    private final int readTimeout;
+    // Applied when the endpoint fails or does not answer within the validation timeout
+    private final EndpointFailurePolicy failurePolicy;
+    // Number of recent requests the circuit breaker looks at, 0 disables the breaker
+    private final int breakerWindow;
+    // Share of failed or slow requests in the window that opens the breaker, in percent
+    private final int breakerFailureRate;
+    // Requests taking longer than this count as failed, in milliseconds
+    private final long breakerSlowCallThreshold;
+    // How long the breaker stays open before a trial request is let through, in milliseconds
+    private final long breakerOpenDuration;
+    private final CircuitBreakerFallback breakerFallback;
 }
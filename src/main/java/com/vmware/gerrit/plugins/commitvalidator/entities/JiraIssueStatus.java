@@ -0,0 +1,23 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+@Getter
+@AllArgsConstructor
+@ToString
+public class JiraIssueStatus implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String issueId;
+    // Status name of the issue. Null if the issue was not found.
+    private final String status;
+    private final long fetchedAt;
+
+    public boolean isFound() {
+        return status != null;
+    }
+}
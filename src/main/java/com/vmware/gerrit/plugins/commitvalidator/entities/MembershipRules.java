@@ -0,0 +1,29 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.AccountGroup;
+import com.vmware.gerrit.plugins.commitvalidator.utils.AccountIdSet;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Groups and accounts a list of "group ..." and "user ..." rules resolves to
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class MembershipRules {
+    private static final MembershipRules EMPTY = new MembershipRules(ImmutableSet.of(), AccountIdSet.empty());
+
+    private final ImmutableSet<AccountGroup.UUID> groups;
+    private final AccountIdSet accounts;
+
+    public static MembershipRules empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty() && accounts.size() == 0;
+    }
+}
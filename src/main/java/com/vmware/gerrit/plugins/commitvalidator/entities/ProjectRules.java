@@ -4,18 +4,18 @@ import java.util.List;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class ProjectRules {
-    private boolean enabled;
-    private String commitTemplate;
-    private List<String> skipTemplateValidationForAuthors;
-    private List<String> skipTemplateValidationForCommitters;
-    private List<String> additionalCodeReviewApprovalConditions;
-    private List<String> additionalCodeReviewApprovers;
+    private final boolean enabled;
+    private final String commitTemplate;
+    private final List<String> skipTemplateValidationForAuthors;
+    private final List<String> skipTemplateValidationForCommitters;
+    private final List<String> additionalCodeReviewApprovalConditions;
+    private final List<String> additionalCodeReviewApprovers;
+    // Changes whenever the rules are read again after a project config update
+    private final long version;
 }
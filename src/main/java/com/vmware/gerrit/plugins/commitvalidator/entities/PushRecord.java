@@ -0,0 +1,50 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Outcome of all commit validations of one push as written to the validation log, with the
+ * details of every validated commit nested.
+ */
+@Getter
+public class PushRecord {
+    private final String project;
+    // Null if the push was not made by an identified user
+    private final Integer uploader;
+    // The most severe result of the commits: ERROR, REJECTED, ACCEPTED, SKIPPED
+    private final ValidationRecord.Result result;
+    // Time spent validating the commits
+    private final long durationMillis;
+    private final List<ValidationRecord> commits;
+
+    public PushRecord(String project, Integer uploader, List<ValidationRecord> commits) {
+        this.project = project;
+        this.uploader = uploader;
+        this.commits = commits;
+        this.result = getResult(commits);
+        this.durationMillis = commits.stream().mapToLong(ValidationRecord::getDurationMillis).sum();
+    }
+
+    private static ValidationRecord.Result getResult(List<ValidationRecord> commits) {
+        ValidationRecord.Result result = ValidationRecord.Result.SKIPPED;
+        for (ValidationRecord commit : commits) {
+            switch (commit.getResult()) {
+                case ERROR:
+                    return ValidationRecord.Result.ERROR;
+                case REJECTED:
+                    result = ValidationRecord.Result.REJECTED;
+                    break;
+                case ACCEPTED:
+                    if (result == ValidationRecord.Result.SKIPPED) {
+                        result = ValidationRecord.Result.ACCEPTED;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+}
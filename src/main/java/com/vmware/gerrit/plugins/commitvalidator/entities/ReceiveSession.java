@@ -0,0 +1,160 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import net.rcarz.jiraclient.JiraException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Work shared by all commits of one receive operation: the time budget, validation plans per ref,
+ * skip list decisions and Jira lookups. Lookups that failed are not retried within the same receive.
+ * It also collects the validation records of the commits, which are logged together once the
+ * receive ends.
+ */
+public class ReceiveSession {
+    /**
+     * Lookup that is run at most once per receive
+     */
+    @FunctionalInterface
+    public interface JiraLookup {
+        JiraIssueStatus get() throws JiraException;
+    }
+
+    // Point in time (System.currentTimeMillis()) after which endpoints are no longer waited for
+    private final long deadline;
+    private final String project;
+    private final Integer uploader;
+    // Whether the end of the receive is detected, otherwise every commit is a receive of its own
+    private final boolean tracked;
+    private final List<ValidationRecord> records = new ArrayList<>();
+    private boolean ended;
+    private final Map<String, Optional<ValidationPlan>> validationPlans = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> skipDecisions = new ConcurrentHashMap<>();
+    private final Map<String, Object> jiraLookups = new ConcurrentHashMap<>();
+    private final Set<String> reportedWarnings = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param deadline end of the time budget of the whole receive, shared by all its commits
+     * @param project
+     * @param uploader account id of the uploader, null if unknown
+     * @param tracked whether the end of the receive is detected
+     */
+    public ReceiveSession(long deadline, String project, Integer uploader, boolean tracked) {
+        this.deadline = deadline;
+        this.project = project;
+        this.uploader = uploader;
+        this.tracked = tracked;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * Adds the record of a validated commit, unless the receive already ended
+     *
+     * @param record
+     * @return false if the receive already ended
+     */
+    public synchronized boolean addRecord(ValidationRecord record) {
+        if (ended) {
+            return false;
+        }
+        records.add(record);
+        return true;
+    }
+
+    /**
+     * Ends the receive and returns the record of all its validated commits, only on the first call
+     *
+     * @return null if the receive already ended or no commit was validated
+     */
+    public synchronized PushRecord end() {
+        if (ended) {
+            return null;
+        }
+        ended = true;
+        return records.isEmpty() ? null : newPushRecord(records);
+    }
+
+    /**
+     * Builds the record of given commits of this receive
+     *
+     * @param commits
+     * @return
+     */
+    public PushRecord newPushRecord(List<ValidationRecord> commits) {
+        return new PushRecord(project, uploader, commits);
+    }
+
+    /**
+     * Returns the memoized validation plan of given ref, null if it was not looked up yet
+     *
+     * @param refName
+     * @return
+     */
+    public Optional<ValidationPlan> getValidationPlan(String refName) {
+        return validationPlans.get(refName);
+    }
+
+    public void putValidationPlan(String refName, ValidationPlan plan) {
+        validationPlans.put(refName, Optional.ofNullable(plan));
+    }
+
+    /**
+     * Returns the memoized skip decision, null if it was not made yet
+     *
+     * @param key
+     * @return
+     */
+    public Boolean getSkipDecision(String key) {
+        return skipDecisions.get(key);
+    }
+
+    public void putSkipDecision(String key, boolean skip) {
+        skipDecisions.put(key, skip);
+    }
+
+    /**
+     * Runs the lookup for given issue once per receive and replays its result, or its
+     * failure, for every later commit referring to the same issue
+     *
+     * @param key
+     * @param lookup
+     * @return
+     * @throws JiraException
+     */
+    public JiraIssueStatus getJiraIssueStatus(String key, JiraLookup lookup) throws JiraException {
+        Object outcome = jiraLookups.get(key);
+        if (outcome == null) {
+            try {
+                outcome = lookup.get();
+            } catch (JiraException e) {
+                outcome = e;
+            }
+            jiraLookups.put(key, outcome);
+        }
+        if (outcome instanceof JiraException) {
+            throw (JiraException) outcome;
+        }
+        return (JiraIssueStatus) outcome;
+    }
+
+    /**
+     * Checks whether the warning is new within this receive, so it is shown only once
+     *
+     * @param warning
+     * @return
+     */
+    public boolean markWarningReported(String warning) {
+        return reportedWarnings.add(warning);
+    }
+}
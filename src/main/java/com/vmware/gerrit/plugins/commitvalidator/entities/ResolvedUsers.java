@@ -0,0 +1,20 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.vmware.gerrit.plugins.commitvalidator.utils.AccountIdSet;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Group or account a single "group ..." or "user ..." rule resolves to. Group members are not
+ * enumerated, membership is checked against the effective groups of a user.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ResolvedUsers {
+    // UUID of the resolved group. Null for "user" rules.
+    private final String groupUuid;
+    // Account of a "user" rule. Empty for "group" rules.
+    private final AccountIdSet accountIds;
+}
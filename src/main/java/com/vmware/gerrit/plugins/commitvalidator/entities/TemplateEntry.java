@@ -1,25 +1,43 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class TemplateEntry {
-    private String name;
-    private TemplateEntryKind kind;
-    private TemplateEntryType type;
-    private String key;
-    private String value;
-    private String exampleValue;
-    private boolean validateValueAgainstEndpoint;
-    private EndpointType endpointType;
-    private String endpointName;
-    private List<String> allowedStatuses;
+    private final String name;
+    private final TemplateEntryKind kind;
+    private final TemplateEntryType type;
+    private final String key;
+    private final String value;
+    private final String exampleValue;
+    private final boolean validateValueAgainstEndpoint;
+    private final EndpointType endpointType;
+    private final String endpointName;
+    private final List<String> allowedStatuses;
+    // Compiled form of value, built when the config is loaded. Null if no value is configured.
+    private final Pattern valuePattern;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final ThreadLocal<Matcher> valueMatcher = ThreadLocal.withInitial(() -> getValuePattern().matcher(""));
+
+    /**
+     * Returns this thread's matcher for the value pattern, reset to the given input.
+     * The matcher must not be held on to beyond the current validation step.
+     *
+     * @param input
+     * @return
+     */
+    public Matcher valueMatcher(CharSequence input) {
+        return valueMatcher.get().reset(input).useTransparentBounds(false).useAnchoringBounds(true);
+    }
 }
@@ -0,0 +1,51 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Project;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of one commit validation: who pushed what and which warnings are shown to the uploader
+ * even if the commit is accepted. Work shared with the other commits of the same receive,
+ * including the time budget, is kept in its {@link ReceiveSession}.
+ */
+@Getter
+public class ValidationContext {
+    private final Project.NameKey project;
+    private final String commit;
+    // Null if the push was not made by an identified user
+    private final Account.Id uploader;
+    private final ReceiveSession session;
+    private final List<String> warnings = new ArrayList<>();
+
+    public ValidationContext(Project.NameKey project, String commit, Account.Id uploader, ReceiveSession session) {
+        this.project = project;
+        this.commit = commit;
+        this.uploader = uploader;
+        this.session = session;
+    }
+
+    /**
+     * Returns the point in time (System.currentTimeMillis()) after which endpoints are no longer
+     * waited for. The budget is shared by all commits of the receive.
+     *
+     * @return
+     */
+    public long getDeadline() {
+        return session.getDeadline();
+    }
+
+    /**
+     * Adds a warning unless it was already shown for another commit of the same receive
+     *
+     * @param warning
+     */
+    public void addWarning(String warning) {
+        if (session.markWarningReported(warning)) {
+            warnings.add(warning);
+        }
+    }
+}
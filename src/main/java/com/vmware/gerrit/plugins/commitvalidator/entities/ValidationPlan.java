@@ -0,0 +1,21 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Everything needed to validate commits of one project ref: the project rules that apply to the
+ * ref and their commit template with its compiled entries. Plans are cached per project and ref
+ * and built again after the project's or a parent project's refs/meta/config changed.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ValidationPlan {
+    private final ProjectRules rules;
+    // Null if the rules name no template or one that is not defined in the plugin config
+    private final CommitTemplate commitTemplate;
+    // Version of the plugin config snapshot the template was resolved from
+    private final long configVersion;
+}
@@ -0,0 +1,46 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Outcome of one commit validation, nested in the {@link PushRecord} of its push. Entry details
+ * are only filled in for rejected commits.
+ */
+@Getter
+@Setter
+public class ValidationRecord {
+    public enum Result {
+        ACCEPTED, REJECTED, SKIPPED, ERROR
+    }
+
+    private final String branch;
+    private final String commit;
+    private String template;
+    // Stays ERROR if the validation ended with an unexpected exception
+    private Result result = Result.ERROR;
+    // Why the validation was skipped
+    private String reason;
+    // Why the skip list could not be checked, the commit is then validated
+    private String skipListError;
+    private long durationMillis;
+    private List<MessageEntry> errors;
+    private List<String> warnings;
+
+    public ValidationRecord(String branch, String commit) {
+        this.branch = branch;
+        this.commit = commit;
+    }
+
+    /**
+     * Marks the validation as skipped
+     *
+     * @param reason
+     */
+    public void skip(String reason) {
+        this.result = Result.SKIPPED;
+        this.reason = reason;
+    }
+}
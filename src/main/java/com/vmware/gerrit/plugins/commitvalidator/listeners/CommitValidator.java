@@ -2,364 +2,297 @@ package com.vmware.gerrit.plugins.commitvalidator.listeners;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.extensions.api.GerritApi;
 import com.google.gerrit.extensions.restapi.RestApiException;
-import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.events.CommitReceivedEvent;
 import com.google.gerrit.server.git.validators.CommitValidationException;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.inject.Inject;
 import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
 import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.CommitValidatorMetrics;
+import com.vmware.gerrit.plugins.commitvalidator.utils.CommitValidatorMetrics.Stage;
+import com.vmware.gerrit.plugins.commitvalidator.utils.EndpointRechecker;
+import com.vmware.gerrit.plugins.commitvalidator.utils.EndpointValidator;
 import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraIssueStatusCache;
 import com.vmware.gerrit.plugins.commitvalidator.utils.JiraUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ReceiveSessions;
+import com.vmware.gerrit.plugins.commitvalidator.utils.TemplateValidator;
 import lombok.extern.slf4j.Slf4j;
 import net.rcarz.jiraclient.JiraException;
-import org.apache.commons.lang.StringUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class CommitValidator implements CommitValidationListener {
-
     @Inject
-    protected GerritApi gerritApi;
+    private CommitValidatorConfig pluginConfig;
+    @Inject
+    private JiraIssueStatusCache jiraIssueStatusCache;
+    @Inject
+    private GerritUtils gerritUtils;
+    @Inject
+    private EndpointRechecker endpointRechecker;
+    @Inject
+    private ReceiveSessions receiveSessions;
+    @Inject
+    private CommitValidatorMetrics metrics;
     @Inject
-    private PluginConfigFactory pluginConfigFactory;
+    private TemplateValidator templateValidator;
 
     @Override
     public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
             throws CommitValidationException {
+        ValidationRecord record = new ValidationRecord(receiveEvent.getBranchNameKey().shortName(),
+                receiveEvent.commit.getId().name());
+        long start = System.nanoTime();
+        // Work shared with the other commits of the same push
+        ReceiveSession session = receiveSessions.get(receiveEvent);
+        try (Timer0.Context ignored = metrics.startValidation()) {
+            return validateCommit(receiveEvent, session, record);
+        } finally {
+            record.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            receiveSessions.addRecord(session, record);
+        }
+    }
+
+    private List<CommitValidationMessage> validateCommit(CommitReceivedEvent receiveEvent, ReceiveSession session,
+                                                         ValidationRecord record) throws CommitValidationException {
 
         // Read patchset values
         String projectName = receiveEvent.project.getName();
         Project.NameKey projectNameKey = receiveEvent.project.getNameKey();
-        // TODO: find a better way to handle branch names
-        String branchName = receiveEvent.getBranchNameKey().branch().replaceFirst("refs/heads/", "");
+        String refName = receiveEvent.getBranchNameKey().branch();
         String commitMessageBody = receiveEvent.commit.getFullMessage();
         String commitSubject = receiveEvent.commit.getShortMessage();
-        String commit = receiveEvent.commit.getId().toString();
-        String committer = receiveEvent.commit.getCommitterIdent().getEmailAddress().split("@")[0];
-        String author = receiveEvent.commit.getAuthorIdent().getEmailAddress().split("@")[0];
-
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = getPluginConfig();
-
-        // Fetch Project rules
-        ProjectRules projectRules = null;
-        try {
-            projectRules = pluginConfig.getProjectRules(projectNameKey, branchName);
-        } catch (Exception e) {
-            log.warn(
-                    "Project: {}, commit: {} - skipping the commit validation as there is an error while reading the validation rules from plugin config: {}",
-                    projectName, commit, e.getMessage());
-
-            // Do not block if there are config issues
-            return ImmutableList.of();
+        String commit = receiveEvent.commit.getId().name();
+        String committer = receiveEvent.commit.getCommitterIdent().getEmailAddress();
+        String author = receiveEvent.commit.getAuthorIdent().getEmailAddress();
+
+        // Fetch the validation plan of the target branch
+        ValidationPlan plan = null;
+        try (Timer1.Context<Stage> ignored = metrics.startStage(Stage.RULES)) {
+            Optional<ValidationPlan> sessionPlan = session.getValidationPlan(refName);
+            if (sessionPlan != null) {
+                plan = sessionPlan.orElse(null);
+            } else {
+                try {
+                    plan = pluginConfig.getValidationPlan(projectNameKey, refName);
+                } catch (Exception e) {
+                    log.warn(
+                            "Project: {}, commit: {} - skipping the commit validation as there is an error while reading the validation rules from plugin config: {}",
+                            projectName, commit, e.getMessage());
+
+                    // Do not block if there are config issues
+                    record.skip("Error reading project rules");
+                    return ImmutableList.of();
+                }
+                session.putValidationPlan(refName, plan);
+            }
         }
 
         // Skip the validation if project is not configured with any rules
-        if (projectRules == null) {
-            log.info(
+        if (plan == null) {
+            log.debug(
                     "Project: {}, commit: {} - skipping the commit validation as the project is not configured with any validation rules",
-                    projectNameKey.toString(), commit);
+                    projectNameKey, commit);
+            record.skip("No project rules");
             return ImmutableList.of();
         }
+        ProjectRules projectRules = plan.getRules();
 
         // Skip the validation if project is configured but not enabled for validation
         if (!projectRules.isEnabled()) {
-            log.info("Project: {}, commit: {} - skipping the commit validation as the project is not enabled for validation",
+            log.debug("Project: {}, commit: {} - skipping the commit validation as the project is not enabled for validation",
                     projectName, commit);
+            record.skip("Project not enabled");
             return ImmutableList.of();
         }
 
         // Skip the validation if project is configured to skip validation for this author/committer
-        GerritUtils gerritUtils = new GerritUtils(gerritApi);
-        try {
+        try (Timer1.Context<Stage> ignored = metrics.startStage(Stage.SKIP_LIST)) {
             // For Author
-            log.info("Project: {}, commit: {}, author: {} - checking skip eligibility for Author with config: {}", projectName, commit, author,projectRules.getSkipTemplateValidationForAuthors());
+            log.debug("Project: {}, commit: {}, author: {} - checking skip eligibility for Author with config: {}", projectName, commit, author, projectRules.getSkipTemplateValidationForAuthors());
             if (!projectRules.getSkipTemplateValidationForAuthors().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForAuthors());
-                log.info("Project: {}, commit: {}, author: {} - skip eligible users {}", projectName, commit, author, skipValidationUsers.toString());
-                boolean skipValidation = skipValidationUsers.contains(author);
+                boolean skipValidation = isInSkipList(session, record, projectName, "author", refName,
+                        projectRules.getSkipTemplateValidationForAuthors(), author);
 
                 if (skipValidation) {
-                    log.info("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
+                    log.debug("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
                             projectName, commit, author);
+                    record.skip("Author in skip list");
                     return ImmutableList.of();
                 }
             }
 
             // For Committer
-            log.info("Project: {}, commit: {}, committer: {} - checking skip eligibility for Committer with config: {}", projectName, commit, author,projectRules.getSkipTemplateValidationForCommitters());
+            log.debug("Project: {}, commit: {}, committer: {} - checking skip eligibility for Committer with config: {}", projectName, commit, committer, projectRules.getSkipTemplateValidationForCommitters());
             if (!projectRules.getSkipTemplateValidationForCommitters().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForCommitters());
-                log.info("Project: {}, commit: {}, committer: {} - skip eligible users {}", projectName, commit, committer, skipValidationUsers.toString());
-                boolean skipValidation = skipValidationUsers.contains(committer);
+                boolean skipValidation = isInSkipList(session, record, projectName, "committer", refName,
+                        projectRules.getSkipTemplateValidationForCommitters(), committer);
 
 
                 if (skipValidation) {
-                    log.info("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
+                    log.debug("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
                             projectName, commit, committer);
+                    record.skip("Committer in skip list");
                     return ImmutableList.of();
                 }
 
             }
-        } catch (RestApiException e) {
-            // TODO: handle it
-            e.printStackTrace();
         }
 
-        log.info("Project: {}, commit: {} - validating the commit validation rules...",
+        log.debug("Project: {}, commit: {} - validating the commit validation rules...",
                 projectName, commit);
+        record.setTemplate(projectRules.getCommitTemplate());
 
         // Get commit template for this project
-        CommitTemplate commitTemplate = pluginConfig.getCommitTemplate(projectRules.getCommitTemplate());
+        CommitTemplate commitTemplate = plan.getCommitTemplate();
 
         // Skip the validation if no commit template is configured for this project or
         // configured template definition is not available in the plugin config
         if (commitTemplate == null) {
-            log.info(
+            log.debug(
                     "Project: {}, commit: {} - either no commit template is configured for this project or unable to find the configured one in the plugin config, commit template: {}",
                     projectName, commit, projectRules.getCommitTemplate());
+            record.skip("Commit template not found");
             return ImmutableList.of();
         }
 
-        // Get mandatory entries from configured template
-        List<TemplateEntry> mandatoryTemplateEntries = commitTemplate.getMandatoryEntry();
-
-        // Get lines from commit message body
-        String[] messageBodyLines = parseCommitMessage(commitMessageBody);
+        // Endpoints are only waited for until the time budget of the receive is used up
+        ConfigSnapshot snapshot = pluginConfig.getSnapshot();
+        ValidationContext context = new ValidationContext(projectNameKey, commit,
+                receiveEvent.user != null ? receiveEvent.user.getAccountId() : null, session);
 
         // Validate whether all template mandatory entries rules are fullfilled by the
         // commit message and collect all validation error entries.
-        List<MessageEntry> validationErrors = mandatoryTemplateEntries.parallelStream().filter(entry -> {
-            // Ignore the entry check if both key and value are not present in template
-            // entry definition
-
-            return !(StringUtils.isEmpty(entry.getKey()) && StringUtils.isEmpty(entry.getValue()));
-        }).map(entry -> {
-            MessageEntry messageEntry = new MessageEntry();
-            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
-                messageEntry.setEntryName(entry.getKey());
-            } else {
-                messageEntry.setEntryName(entry.getName());
-            }
-
-            messageEntry.setKind(entry.getKind());
-            messageEntry.setEntryType(entry.getType());
-            messageEntry.setExample(entry.getExampleValue());
-
-            // Extract the values for the template entry based on its kind
-            TemplateEntryKind entryKind = entry.getKind();
-
-            if (entryKind == TemplateEntryKind.KEY_VAL) {
-                // Extract value from matching key-value pair
-                String keyValue = extractValueFromMatchingKeyValPair(messageBodyLines, entry.getKey());
-
-                // If no key is found, return with missing entry message
-                if (keyValue == null) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_KEY);
-                    return messageEntry;
-                } else if (keyValue.isEmpty()) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
-                    return messageEntry;
-                }
-
-                // Set actual value to message
-                messageEntry.setActualValues(Arrays.asList(keyValue));
-
-                // Validate the value and set to message
-                TemplateEntryValidationResult validationResult = validateKeyValPairEntryValue(entry, keyValue);
-                messageEntry.setEntryValidationStatus(validationResult.getStatus());
-                messageEntry.setValidationMessage(validationResult.getMessage());
-            } else {
-                // Extract matching values
-                List<String> matchingValues = new ArrayList<>();
-                if (entryKind == TemplateEntryKind.STR_SUB) {
-                    matchingValues.addAll(extractMatchingStrings(commitSubject, entry.getValue()));
-                } else if (entryKind == TemplateEntryKind.STR_BODY) {
-                    matchingValues.addAll(extractMatchingStrings(commitMessageBody, entry.getValue()));
-                }
-
-                // Return if no matching values are found
-                if (matchingValues.isEmpty()) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
-                    return messageEntry;
-                }
-
-                // Set actual value to message
-                messageEntry.setActualValues(matchingValues);
-
-                log.info(
-                        "Project: {}, commit: {}, matching values:{}", projectName, commit, matchingValues);
-
-                // Validate all matching values and extract invalid values
-                List<TemplateEntryValidationResult> invalidValuesFromMatched = matchingValues.stream().map(s -> {
-                    log.info(
-                            "Project: {}, commit: {}, validating the value:{}", projectName, commit, s);
-                    return validateStringEntry(entry, s);
-                }).filter(validationResult -> validationResult.getStatus() == TemplateEntryValidationStatus.INVALID_VALUE).collect(Collectors.toList());
-
-                // Set the validation status of entry as INVALID if at least
-                // one value is invalid
-                if (invalidValuesFromMatched.size() > 0) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.INVALID_VALUE);
-                    List<String> invalidMessages = invalidValuesFromMatched.stream().map(res -> res.getMessage()).collect(Collectors.toList());
-                    messageEntry.setValidationMessage(invalidMessages.toString());
-                } else {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.VALID_VALUE);
-                }
-            }
-            log.info(
-                    "Project: {}, commit: {}, template entry name: {}, entry value pattern: {}, entry actual value: {}",
-                    projectName, commit, entry.getName(), entry.getValue(), messageEntry.getActualValues());
-            return messageEntry;
-        }).filter(messageEntry -> {
-            // Ignore VALID value entries
-            return messageEntry.getEntryValidationStatus() != TemplateEntryValidationStatus.VALID_VALUE;
-        }).collect(Collectors.toList());
+        // Runs on the receiving thread; blocking endpoint calls go to the plugin's own executor.
+        List<MessageEntry> validationErrors = templateValidator.validate(commitTemplate, commitSubject,
+                commitMessageBody, new EndpointValidator() {
+                    @Override
+                    public TemplateEntryValidationResult validate(TemplateEntry entry, String value) {
+                        return validateAgainstEndpoint(context, entry, value);
+                    }
+
+                    @Override
+                    public void prefetch(TemplateEntry entry, List<String> values) {
+                        prefetchFromEndpoint(entry, values);
+                    }
+                }, snapshot.isFailFast());
 
         // Construct the error message if there are validation errors
+        record.setWarnings(context.getWarnings());
         if (!validationErrors.isEmpty()) {
-            String errorMessage = getMissingentriesMessage(validationErrors);
+            record.setResult(ValidationRecord.Result.REJECTED);
+            record.setErrors(validationErrors);
+            String errorMessage = getMissingentriesMessage(validationErrors, snapshot.isFailFast());
 
             // Throw the validation error. This gets displayed in user's console/screen.
+            metrics.countResult(projectName, projectRules.getCommitTemplate(), false);
             CommitValidationMessage m = new CommitValidationMessage(errorMessage, true);
-            throw new CommitValidationException(Constants.MESSAGE_VALIDATION_EXCEPTION, ImmutableList.of(m));
+            throw new CommitValidationException(Constants.MESSAGE_VALIDATION_EXCEPTION,
+                    ImmutableList.<CommitValidationMessage>builder().add(m).addAll(getWarnings(context)).build());
         }
 
         // No errors. Allow further processing of the change by Gerrit.
-        return ImmutableList.of();
-    }
-
-    /**
-     * Validates the key value pair value based on its type
-     *
-     * @param entry
-     * @param keyValue
-     * @return
-     */
-    private TemplateEntryValidationResult validateKeyValPairEntryValue(TemplateEntry entry, String keyValue) {
-        switch (entry.getType()) {
-            case BOOLEAN:
-                return validateBoolEntry(keyValue);
-            case INTEGER:
-                return validateIntEntry(keyValue);
-            case STRING:
-            default:
-                return validateStringEntry(entry, keyValue);
-        }
-    }
-
-    /**
-     * Validates boolean entry value
-     *
-     * @param entryActualValue
-     * @return
-     */
-    private TemplateEntryValidationResult validateBoolEntry(String entryActualValue) {
-        Pattern pattern = Pattern.compile("true|false", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(entryActualValue);
-        if (!matcher.find()) {
-            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, "Not a boolean value");
-        }
-        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+        record.setResult(ValidationRecord.Result.ACCEPTED);
+        metrics.countResult(projectName, projectRules.getCommitTemplate(), true);
+        return getWarnings(context);
     }
 
     /**
-     * Validates integer entry value
+     * Checks whether the account with the given email is in the skip list, deciding once per receive.
+     * If the account cannot be looked up, the email is treated as not in the skip list, so the
+     * commit is validated.
      *
-     * @param entryActualValue
+     * @param session
+     * @param record
+     * @param projectName
+     * @param role
+     * @param refName
+     * @param skipList
+     * @param email
      * @return
      */
-    private TemplateEntryValidationResult validateIntEntry(String entryActualValue) {
-        try {
-            Integer.parseInt(entryActualValue);
-        } catch (NumberFormatException e) {
-            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, "Not a number value");
+    private boolean isInSkipList(ReceiveSession session, ValidationRecord record, String projectName, String role,
+                                 String refName, List<String> skipList, String email) {
+        String key = role + "/" + refName + "/" + email;
+        Boolean skip = session.getSkipDecision(key);
+        if (skip == null) {
+            try {
+                skip = gerritUtils.containsUser(skipList, email);
+            } catch (RestApiException e) {
+                log.warn("Project: {}, commit: {}, {}: {} - unable to check the skip list, validating the commit: {}",
+                        projectName, record.getCommit(), role, email, e.getMessage());
+                record.setSkipListError(String.format("Unable to check the %s skip list for %s: %s",
+                        role, email, e.getMessage()));
+                skip = false;
+            }
+            session.putSkipDecision(key, skip);
         }
-        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+        return skip;
     }
 
     /**
-     * Validates string entry value as per entry value pattern
+     * Validates a value that matches the entry pattern against the entry's endpoint
      *
+     * @param context
      * @param entry
      * @param entryActualValue
      * @return
      */
-    private TemplateEntryValidationResult validateStringEntry(TemplateEntry entry, String entryActualValue) {
-        TemplateEntryValidationResult result = new TemplateEntryValidationResult();
-
-        // Validate the value as per pattern
-        Pattern valPattern = Pattern.compile(entry.getValue().trim());
-        Matcher valMatcher = valPattern.matcher(entryActualValue.trim());
-
-        if (!valMatcher.matches()) {
-            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, String.format("No values matching '%s' format", entry.getValue()));
-        }
-
-        log.info(">>validate value against endpoint {}", entry.isValidateValueAgainstEndpoint());
-
-        // Validate against Endpoint if set
-        if (entry.isValidateValueAgainstEndpoint()) {
-            if (entry.getEndpointType() == null || StringUtils.isEmpty(entry.getEndpointName())) {
-                log.warn("Unable to validate the value of template entry {} against endpoint as endpoint details are missing", entry.getName());
-                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "No endpoint details in config");
-            }
-
-            log.info(">>validating based on type");
-            // Validate based on endpoint type
-            switch (entry.getEndpointType()) {
-                case JIRA:
-                    log.info(">>validating based against Jira");
-                    return validateAgainstJira(entry, entryActualValue);
-                default:
-                    log.warn("Unable to validate the value of template entry {} against endpoint as endpoint type {} is unknown", entry.getName(), entry.getEndpointType());
-                    // Return as Valid as we do not know what to validate here
-                    return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "Unknown endpoint type");
-            }
+    private TemplateEntryValidationResult validateAgainstEndpoint(ValidationContext context, TemplateEntry entry, String entryActualValue) {
+        // Validate based on endpoint type
+        switch (entry.getEndpointType()) {
+            case JIRA:
+                return validateAgainstJira(context, entry, entryActualValue);
+            default:
+                log.warn("Unable to validate the value of template entry {} against endpoint as endpoint type {} is unknown", entry.getName(), entry.getEndpointType());
+                // Return as Valid as we do not know what to validate here
+                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "Unknown endpoint type");
         }
-        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
     }
 
     /**
      * Validates the given value against endpoint
      *
+     * @param context
      * @param entry
      * @param value
      * @return
      */
-    private TemplateEntryValidationResult validateAgainstJira(TemplateEntry entry, String value) {
+    private TemplateEntryValidationResult validateAgainstJira(ValidationContext context, TemplateEntry entry, String value) {
         TemplateEntryValidationResult result = new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
 
-        // Remove any unwanted braces from Jira issue ID
-        // In general this is not needed but to handle VMware use cases, this is added.
-        String actualValue = value.replaceAll("[\\[\\]]", "");
+        String actualValue = JiraUtils.toIssueId(value);
 
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = getPluginConfig();
         JiraEndpoint jiraEndpoint = pluginConfig.getJiraEndpointConfig(entry.getEndpointName());
-        JiraUtils jiraUtils = new JiraUtils(jiraEndpoint.getUrl(), jiraEndpoint.getUsername(), jiraEndpoint.getPassword());
+        if (jiraEndpoint == null) {
+            log.warn("Unable to validate the value of template entry {} as Jira endpoint {} is not configured", entry.getName(), entry.getEndpointName());
+            return result;
+        }
         boolean isJiraValid = false;
-        try {
-            isJiraValid = jiraUtils.isIssueIdValid(actualValue, entry.getAllowedStatuses());
-        } catch (InvalidEntryException | JiraException e) {
-            // TODO: Handle Jira down issues
+        try (Timer1.Context<Stage> ignored = metrics.startStage(Stage.ENDPOINT)) {
+            JiraIssueStatus issueStatus = context.getSession().getJiraIssueStatus(jiraEndpoint.getName() + "/" + actualValue,
+                    () -> jiraIssueStatusCache.getIssueStatus(jiraEndpoint, actualValue, context.getDeadline()));
+            isJiraValid = JiraUtils.isIssueIdValid(issueStatus, entry.getAllowedStatuses());
+        } catch (InvalidEntryException e) {
             result.setStatus(TemplateEntryValidationStatus.INVALID_VALUE);
             result.setMessage(e.getMessage());
             return result;
+        } catch (JiraException e) {
+            // Jira is down or too slow, the endpoint decides whether the push may go through
+            return onEndpointFailure(context, entry, jiraEndpoint, actualValue, e);
         }
 
-        log.info(">> Jira {} valid? {}", actualValue, isJiraValid);
+        log.debug("Jira issue {} valid: {}", actualValue, isJiraValid);
         if (!isJiraValid) {
             result.setStatus(TemplateEntryValidationStatus.INVALID_VALUE);
         }
@@ -367,76 +300,79 @@ public class CommitValidator implements CommitValidationListener {
     }
 
     /**
-     * Builds the error message when mandatory template entries are missing
+     * Applies the endpoint's failure policy to a value that could not be verified
      *
+     * @param context
+     * @param entry
+     * @param jiraEndpoint
+     * @param issueId
+     * @param error
      * @return
      */
-    private String getMissingentriesMessage(List<MessageEntry> validationMessageEntries) {
-        Message validationMsg = new Message(validationMessageEntries);
-
-        return String.format("%n%s%n\tINVALID COMMIT\t%n%s%n%s%n%s%n%n%s%n%n%s", Constants.LINE_BREAK_ASTERISK,
-                Constants.LINE_BREAK_ASTERISK, Constants.MESSAGE_MISSING_OR_INVALID_ENTRIES,
-                Constants.LINE_BREAK_HYPHEN, validationMsg.toString(), Constants.LINE_BREAK_ASTERISK);
+    private TemplateEntryValidationResult onEndpointFailure(ValidationContext context, TemplateEntry entry,
+                                                            JiraEndpoint jiraEndpoint, String issueId, JiraException error) {
+        log.warn("Project: {}, commit: {} - unable to verify Jira issue {}, applying {} policy: {}",
+                context.getProject(), context.getCommit(), issueId, jiraEndpoint.getFailurePolicy(), error.getMessage());
+        switch (jiraEndpoint.getFailurePolicy()) {
+            case RECHECK:
+                context.addWarning(String.format("Jira issue %s could not be verified now (%s). It will be checked again "
+                        + "later and reported on the change if it is not valid.", issueId, error.getMessage()));
+                endpointRechecker.scheduleJiraRecheck(context, entry, jiraEndpoint, issueId,
+                        pluginConfig.getSnapshot().getRecheckDelay());
+                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+            case ACCEPT:
+                context.addWarning(String.format("Jira issue %s could not be verified (%s). Please make sure it is valid.",
+                        issueId, error.getMessage()));
+                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+            case REJECT:
+            default:
+                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, error.getMessage());
+        }
     }
 
     /**
-     * Extracts the value for given key if matching key-val pair is found in commit message body.
-     * If no value is found for give key, an empty string is returned.
-     * And if no matching key itself is not found, null is returned.
+     * Returns the warnings collected during validation as non-error messages
      *
-     * @param commitMessageLines
-     * @param key
+     * @param context
      * @return
      */
-    private String extractValueFromMatchingKeyValPair(String[] commitMessageLines, String key) {
-        return Arrays.stream(commitMessageLines).filter(message -> {
-            return message.trim().startsWith(key);
-        }).map(message -> {
-            String[] keyValPair = message.split(":");
-
-            if (keyValPair.length <= 1) {
-                // No value is available for given key
-                // Return empty string
-                return "";
-            }
-            return keyValPair[1].trim();
-        }).findFirst().orElse(null);
+    private List<CommitValidationMessage> getWarnings(ValidationContext context) {
+        return context.getWarnings().stream()
+                .map(warning -> new CommitValidationMessage(warning, false))
+                .collect(ImmutableList.toImmutableList());
     }
 
     /**
-     * Extracts the matching string from given text
+     * Starts endpoint lookups for all values of an entry at once, so they can be batched.
+     * The values already match the entry pattern.
      *
-     * @param inputStr
-     * @param matchPattern
-     * @return
+     * @param entry
+     * @param values
      */
-    private List<String> extractMatchingStrings(String inputStr, String matchPattern) {
-        Pattern pattern = Pattern.compile(matchPattern.trim());
-        Matcher matcher = pattern.matcher(inputStr.trim());
-
-        List<String> matchingStrs = new ArrayList<>();
-        while (matcher.find()) {
-            matchingStrs.add(matcher.group());
+    private void prefetchFromEndpoint(TemplateEntry entry, List<String> values) {
+        if (entry.getEndpointType() != EndpointType.JIRA) {
+            return;
+        }
+        JiraEndpoint jiraEndpoint = pluginConfig.getJiraEndpointConfig(entry.getEndpointName());
+        if (jiraEndpoint != null) {
+            jiraIssueStatusCache.prefetch(jiraEndpoint, values.stream()
+                    .map(JiraUtils::toIssueId).distinct().collect(Collectors.toList()));
         }
-        return matchingStrs;
     }
 
     /**
-     * Splits commit message into lines
+     * Builds the error message when mandatory template entries are missing
      *
-     * @param commitMessage
+     * @param validationMessageEntries
+     * @param failFast whether validation stopped at the first failed entry
      * @return
      */
-    private String[] parseCommitMessage(String commitMessage) {
-        return commitMessage.split(System.getProperty("line.separator"));
-    }
+    private String getMissingentriesMessage(List<MessageEntry> validationMessageEntries, boolean failFast) {
+        Message validationMsg = new Message(validationMessageEntries);
 
-    /**
-     * Gets plugins configuration from etc/commit-validator.config file
-     *
-     * @return
-     */
-    private CommitValidatorConfig getPluginConfig() {
-        return new CommitValidatorConfig(pluginConfigFactory);
+        return String.format("%n%s%n\tINVALID COMMIT\t%n%s%n%s%n%s%n%n%s%n%n%s%s", Constants.LINE_BREAK_ASTERISK,
+                Constants.LINE_BREAK_ASTERISK, Constants.MESSAGE_MISSING_OR_INVALID_ENTRIES,
+                Constants.LINE_BREAK_HYPHEN, validationMsg.toString(),
+                failFast ? String.format("%s%n%n", Constants.MESSAGE_FAIL_FAST) : "", Constants.LINE_BREAK_ASTERISK);
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.vmware.gerrit.plugins.commitvalidator.listeners;
+
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.inject.Inject;
+import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+
+/**
+ * Notes reindexed groups, e.g. after a membership change, so results depending on group
+ * membership are computed again
+ */
+public class GroupMembershipListener implements GroupIndexedListener {
+    @Inject
+    private GerritUtils gerritUtils;
+
+    @Override
+    public void onGroupIndexed(String groupUuid) {
+        gerritUtils.invalidateGroup(groupUuid);
+    }
+}
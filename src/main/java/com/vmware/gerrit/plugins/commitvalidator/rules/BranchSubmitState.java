@@ -0,0 +1,20 @@
+package com.vmware.gerrit.plugins.commitvalidator.rules;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.MembershipRules;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Skip lists and additional approvers of one project branch, resolved to groups and accounts once
+ * and shared by the submit rule evaluation of all changes on that branch
+ */
+@Getter
+@AllArgsConstructor
+public class BranchSubmitState {
+    // Versions of the project rules and group memberships this state was resolved from
+    private final long rulesVersion;
+    private final long membershipVersion;
+    private final MembershipRules skipAuthors;
+    private final MembershipRules skipCommitters;
+    private final MembershipRules additionalApprovers;
+}
@@ -0,0 +1,64 @@
+package com.vmware.gerrit.plugins.commitvalidator.rules;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ProjectRules;
+import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the resolved {@link BranchSubmitState} per project branch, so a query or bulk submit over
+ * many changes of a branch resolves its rules only once. A state is resolved again when the
+ * project rules or a resolved group change. Only the states of recently evaluated branches are kept.
+ */
+@Slf4j
+@Singleton
+public class BranchSubmitStates {
+    private static final long MAX_CACHED_BRANCHES = 8192;
+    private static final long MAX_IDLE_MINUTES = 60;
+
+    private final GerritUtils gerritUtils;
+    private final Cache<String, BranchSubmitState> states = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_BRANCHES)
+            .expireAfterAccess(MAX_IDLE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    @Inject
+    public BranchSubmitStates(GerritUtils gerritUtils) {
+        this.gerritUtils = gerritUtils;
+    }
+
+    /**
+     * Returns the resolved state of given branch
+     *
+     * @param projectNameKey
+     * @param refName
+     * @param projectRules
+     * @return
+     * @throws RestApiException if a group or user could not be resolved
+     */
+    public BranchSubmitState get(Project.NameKey projectNameKey, String refName, ProjectRules projectRules)
+            throws RestApiException {
+        String key = projectNameKey.get() + "/" + refName;
+        long membershipVersion = gerritUtils.getMembershipVersion();
+        BranchSubmitState state = states.getIfPresent(key);
+        if (state != null && state.getRulesVersion() == projectRules.getVersion()
+                && state.getMembershipVersion() == membershipVersion) {
+            return state;
+        }
+
+        log.debug("Resolving submit rules of project {} ref {}", projectNameKey, refName);
+        state = new BranchSubmitState(projectRules.getVersion(), membershipVersion,
+                gerritUtils.resolveRules(projectRules.getSkipTemplateValidationForAuthors()),
+                gerritUtils.resolveRules(projectRules.getSkipTemplateValidationForCommitters()),
+                gerritUtils.resolveRules(projectRules.getAdditionalCodeReviewApprovers()));
+        states.put(key, state);
+        return state;
+    }
+}
@@ -1,48 +1,86 @@
 package com.vmware.gerrit.plugins.commitvalidator.rules;
 
+import com.google.common.cache.Cache;
+import com.google.common.hash.Hashing;
 import com.google.gerrit.common.data.SubmitRecord;
 import com.google.gerrit.common.data.SubmitRecord.Status;
+import com.google.gerrit.entities.Account;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.entities.PatchSetApproval;
 import com.google.gerrit.extensions.restapi.RestApiException;
-import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.cache.CacheModule;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.rules.SubmitRule;
 import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
 import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.entities.MembershipRules;
 import com.vmware.gerrit.plugins.commitvalidator.entities.ProjectRules;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ValidationPlan;
+import com.vmware.gerrit.plugins.commitvalidator.utils.CommitValidatorMetrics;
 import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * Requires an additional Code-Review approval for configured changes. Results are memoized per
+ * patch set and set of Code-Review votes, and computed again when the project rules or a
+ * resolved group change.
+ */
 @Slf4j
 public class SubmitRules implements SubmitRule {
+    public static final String CACHE_NAME = "submit_records";
+
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, String.class, new TypeLiteral<Optional<Status>>() {
+                })
+                        .maximumWeight(16384)
+                        .expireAfterWrite(Duration.ofMinutes(10));
+            }
+        };
+    }
+
+    @Inject
+    private CommitValidatorConfig pluginConfig;
     @Inject
-    protected GerritApi gerritApi;
+    private GerritUtils gerritUtils;
     @Inject
-    private PluginConfigFactory pluginConfigFactory;
+    private BranchSubmitStates branchSubmitStates;
+    @Inject
+    private CommitValidatorMetrics metrics;
+    @Inject
+    @Named(CACHE_NAME)
+    private Cache<String, Optional<Status>> submitRecords;
 
     public Optional<SubmitRecord> evaluate(ChangeData changeData) {
+        try (Timer0.Context ignored = metrics.startSubmitRule()) {
+            return evaluateChange(changeData);
+        }
+    }
+
+    private Optional<SubmitRecord> evaluateChange(ChangeData changeData) {
         String projectName = changeData.project().get();
         Project.NameKey projectNameKey = changeData.project();
-        // TODO: find a better way to handle branch names
-        String branchName = changeData.change().getDest().branch().replaceFirst("refs/heads/", "");
+        String refName = changeData.change().getDest().branch();
         String commit = changeData.change().getId().toString();
-        GerritUtils gerritUtils = new GerritUtils(gerritApi);
-
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = new CommitValidatorConfig(pluginConfigFactory);
 
         // Fetch Project rules
         ProjectRules projectRules = null;
         try {
-            projectRules = pluginConfig.getProjectRules(projectNameKey,
-                    branchName);
+            ValidationPlan plan = pluginConfig.getValidationPlan(projectNameKey, refName);
+            projectRules = plan == null ? null : plan.getRules();
         } catch (Exception e) {
             log.warn(
                     "Project: {}, commit: {} - skipping the submit rules validation as there is an error while reading the validation rules from plugin config: {}",
@@ -51,7 +89,7 @@ public class SubmitRules implements SubmitRule {
 
         // Skip the voting if project is not configured with any rules
         if (projectRules == null) {
-            log.info(
+            log.debug(
                     "Project: {}, commit: {} - skipping the submit rules validation as the project is not configured with any validation rules",
                     projectName, commit);
             return Optional.empty();
@@ -59,93 +97,138 @@ public class SubmitRules implements SubmitRule {
 
         // Skip the voting if project is configured but not enabled for validation
         if (!projectRules.isEnabled()) {
-            log.info("Project: {}, commit: {} - skipping the submit rules validation as the project is not enabled for validation",
+            log.debug("Project: {}, commit: {} - skipping the submit rules validation as the project is not enabled for validation",
                     projectName, commit);
             return Optional.empty();
         }
 
-        // Skip the voting if project is configured to skip validation for this author/committer
-        try {
-            // For Authors
-            if (!projectRules.getSkipTemplateValidationForAuthors().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForAuthors());
-                boolean skipValidation = skipValidationUsers.contains(changeData.getAuthor().getEmailAddress().split("@")[0]);
-                if (skipValidation) {
-                    log.info("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
-                            projectName, commit, changeData.getAuthor().getName());
-                    return Optional.empty();
-                }
-            }
+        // Reuse the result of an earlier evaluation with the same inputs
+        String memoKey = getMemoKey(changeData, projectRules);
+        Optional<Status> memoized = submitRecords.getIfPresent(memoKey);
+        if (memoized != null) {
+            log.debug("Project: {}, commit: {} - reusing submit rules result {}", projectName, commit, memoized);
+            return memoized.isPresent() ? vote(memoized.get()) : Optional.empty();
+        }
 
-            // For Committers
-            if (!projectRules.getSkipTemplateValidationForCommitters().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForCommitters());
-                boolean skipValidation = skipValidationUsers.contains(changeData.getCommitter().getEmailAddress().split("@")[0]);
-                if (skipValidation) {
-                    log.info("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
-                            projectName, commit, changeData.getCommitter().getName());
-                    return Optional.empty();
-                }
-            }
-        } catch (RestApiException e) {
-            // TODO: handle it
-            e.printStackTrace();
+        // Results based on failed lookups are not memoized
+        AtomicBoolean complete = new AtomicBoolean(true);
+        Optional<SubmitRecord> result = evaluateRules(changeData, projectRules, complete);
+        if (complete.get()) {
+            submitRecords.put(memoKey, result.map(record -> record.status));
         }
+        return result;
+    }
+
+    /**
+     * Evaluates the skip lists and additional approver conditions of the project rules. Only the
+     * change's own author, committer and approvals are looked at here, the rules themselves are
+     * resolved once per branch.
+     *
+     * @param changeData
+     * @param projectRules
+     * @param complete     cleared if a lookup failed
+     * @return
+     */
+    private Optional<SubmitRecord> evaluateRules(ChangeData changeData, ProjectRules projectRules, AtomicBoolean complete) {
+        String projectName = changeData.project().get();
+        String commit = changeData.change().getId().toString();
 
         if (projectRules.getAdditionalCodeReviewApprovalConditions().isEmpty()) {
-            log.info(
+            log.debug(
                     "Project: {}, commit: {} - skipping the submit rules validation as the project is not configured with any additional approvers conditions",
                     projectName, commit);
             return Optional.empty();
         }
 
-        log.info("Project: {}, commit: {} - validating the submit rules...",
-                projectName, commit);
-
-        List<String> additionalApprovalConditions = projectRules.getAdditionalCodeReviewApprovalConditions();
+        BranchSubmitState state;
+        try {
+            state = branchSubmitStates.get(changeData.project(), changeData.change().getDest().branch(),
+                    projectRules);
+        } catch (RestApiException e) {
+            log.warn("Project: {}, commit: {} - unable to resolve the submit rules: {}", projectName, commit, e.getMessage());
+            complete.set(false);
+            // Vote OK
+            return vote(Status.OK);
+        }
 
-        // Validate additional approvers conditions
+        // Skip the voting if project is configured to skip validation for this author/committer
         try {
-            List<String> allAdditionalApprovers = gerritUtils.getAllUsers(projectRules.getAdditionalCodeReviewApprovers());
-            log.info("Project: {}, commit: {} - all additional Approvers {}", projectName, commit, allAdditionalApprovers);
-
-            List<String> currentCRApprovers = changeData.
-                    currentApprovals().
-                    parallelStream().
-                    filter(patchSetApproval -> {
-                        return patchSetApproval.labelId().get().equals("Code-Review");
-                    }).map(patchSetApproval -> {
-                return patchSetApproval.accountId().get();
-            }).map(accountId -> {
-                try {
-                    return gerritApi.accounts().id(accountId).get().username;
-                } catch (RestApiException e) {
-                    // TODO: handle this case
-                }
-                return null;
-            }).filter(username -> {
-                return username != null;
-            }).collect(Collectors.toList());
-            log.info("Project: {}, commit: {} - current Approvers {}", projectName, commit, currentCRApprovers);
-
-            boolean additionalApprovalDone = currentCRApprovers.stream().anyMatch(element -> allAdditionalApprovers.contains(element));
-            log.info("Project: {}, commit: {} - additionalApprovalDone {}", projectName, commit, additionalApprovalDone);
-
-            // Vote OK if at least one additional approval is done
-            if (additionalApprovalDone) {
-                return vote(Status.OK);
-            } else {
-                return vote(Status.NOT_READY);
+            // For Authors
+            if (gerritUtils.isMember(state.getSkipAuthors(), changeData.getAuthor().getEmailAddress())) {
+                log.debug("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
+                        projectName, commit, changeData.getAuthor().getName());
+                return Optional.empty();
             }
 
+            // For Committers
+            if (gerritUtils.isMember(state.getSkipCommitters(), changeData.getCommitter().getEmailAddress())) {
+                log.debug("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
+                        projectName, commit, changeData.getCommitter().getName());
+                return Optional.empty();
+            }
         } catch (RestApiException e) {
-            // TODO: handle this case
+            log.warn("Project: {}, commit: {} - unable to check the skip lists: {}", projectName, commit, e.getMessage());
+            complete.set(false);
+            // Vote OK
+            return vote(Status.OK);
+        }
+
+        log.debug("Project: {}, commit: {} - validating the submit rules...",
+                projectName, commit);
+
+        // Validate additional approvers conditions
+        MembershipRules allAdditionalApprovers = state.getAdditionalApprovers();
+        log.debug("Project: {}, commit: {} - all additional Approvers {}", projectName, commit, allAdditionalApprovers);
+
+        boolean additionalApprovalDone = hasAdditionalApproval(changeData.currentApprovals(),
+                accountId -> gerritUtils.isMember(allAdditionalApprovers, accountId));
+        log.debug("Project: {}, commit: {} - additionalApprovalDone {}", projectName, commit, additionalApprovalDone);
+
+        // Vote OK if at least one additional approval is done
+        if (additionalApprovalDone) {
+            return vote(Status.OK);
+        } else {
+            return vote(Status.NOT_READY);
         }
+    }
 
-        // Vote OK
-        return vote(Status.OK);
+    /**
+     * Checks whether any of the approvers voted on Code-Review. Approvals carry the account ID,
+     * so only the voters are checked, never all approvers.
+     *
+     * @param approvals
+     * @param isApprover
+     * @return
+     */
+    public static boolean hasAdditionalApproval(Iterable<PatchSetApproval> approvals, Predicate<Account.Id> isApprover) {
+        for (PatchSetApproval patchSetApproval : approvals) {
+            if (patchSetApproval.labelId().get().equals("Code-Review")
+                    && isApprover.test(patchSetApproval.accountId())) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * Builds the memo key from everything the result depends on: the patch set, its Code-Review
+     * votes, the version of the project rules and the group memberships.
+     *
+     * @param changeData
+     * @param projectRules
+     * @return
+     */
+    private String getMemoKey(ChangeData changeData, ProjectRules projectRules) {
+        String approvals = changeData.currentApprovals().stream()
+                .filter(patchSetApproval -> patchSetApproval.labelId().get().equals("Code-Review"))
+                .map(patchSetApproval -> patchSetApproval.accountId().get() + ":" + patchSetApproval.value())
+                .sorted()
+                .collect(Collectors.joining(","));
+        return String.format("%s/%d/%d/%d/%d/%s", changeData.project().get(), changeData.getId().get(),
+                changeData.change().currentPatchSetId().get(), projectRules.getVersion(),
+                gerritUtils.getMembershipVersion(),
+                Hashing.murmur3_128().hashString(approvals, StandardCharsets.UTF_8));
+    }
 
     /**
      * Votes for the change
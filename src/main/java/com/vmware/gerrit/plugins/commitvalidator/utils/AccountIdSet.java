@@ -0,0 +1,91 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of account IDs backed by a sorted int array, so membership checks neither box
+ * nor hash.
+ */
+public final class AccountIdSet {
+    private static final AccountIdSet EMPTY = new AccountIdSet(new int[0]);
+
+    private final int[] ids;
+
+    private AccountIdSet(int[] ids) {
+        this.ids = ids;
+    }
+
+    public static AccountIdSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set of the given account IDs
+     *
+     * @param accountIds
+     * @return
+     */
+    public static AccountIdSet of(Collection<Integer> accountIds) {
+        int[] ids = new int[accountIds.size()];
+        int i = 0;
+        for (Integer accountId : accountIds) {
+            ids[i++] = accountId;
+        }
+        return sortedDistinct(ids, ids.length);
+    }
+
+    /**
+     * Returns the union of the given sets
+     *
+     * @param sets
+     * @return
+     */
+    public static AccountIdSet union(Collection<AccountIdSet> sets) {
+        if (sets.size() == 1) {
+            return sets.iterator().next();
+        }
+        int size = 0;
+        for (AccountIdSet set : sets) {
+            size += set.ids.length;
+        }
+        int[] ids = new int[size];
+        int offset = 0;
+        for (AccountIdSet set : sets) {
+            System.arraycopy(set.ids, 0, ids, offset, set.ids.length);
+            offset += set.ids.length;
+        }
+        return sortedDistinct(ids, size);
+    }
+
+    private static AccountIdSet sortedDistinct(int[] ids, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(ids, 0, size);
+        int distinct = 1;
+        for (int i = 1; i < size; i++) {
+            if (ids[i] != ids[distinct - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return new AccountIdSet(distinct == ids.length ? ids : Arrays.copyOf(ids, distinct));
+    }
+
+    public boolean contains(int accountId) {
+        return Arrays.binarySearch(ids, accountId) >= 0;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids);
+    }
+}
@@ -0,0 +1,154 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Circuit breaker of one Jira endpoint. Opens when too many of the recent requests failed or were
+ * slow, rejects lookups right away while open, and lets a single trial request through once the
+ * open duration has passed. The breaker is closed again if the trial succeeds.
+ */
+@Slf4j
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown for lookups that are not sent because the breaker is open
+     */
+    public static class OpenException extends JiraException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String endpointName) {
+            super(String.format("Jira endpoint %s is unavailable, not sending requests for now", endpointName));
+        }
+    }
+
+    private final String name;
+    private final BiConsumer<String, State> onTransition;
+    private JiraEndpoint endpoint;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInProgress;
+    // Ring buffer of recent request outcomes, true for failed or slow requests
+    private boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    public CircuitBreaker(JiraEndpoint endpoint, BiConsumer<String, State> onTransition) {
+        this.name = endpoint.getName();
+        this.onTransition = onTransition;
+        reconfigure(endpoint);
+    }
+
+    /**
+     * Applies the settings of a reloaded endpoint definition. The current state is kept.
+     *
+     * @param endpoint
+     */
+    public synchronized void reconfigure(JiraEndpoint endpoint) {
+        this.endpoint = endpoint;
+        if (outcomes == null || outcomes.length != endpoint.getBreakerWindow()) {
+            outcomes = new boolean[endpoint.getBreakerWindow()];
+            resetWindow();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Checks whether a request may be sent to the endpoint
+     *
+     * @return false if the breaker is open or a trial request is already running
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < endpoint.getBreakerOpenDuration()) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                trialInProgress = true;
+                return true;
+            case HALF_OPEN:
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+            case CLOSED:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Records the outcome of a request
+     *
+     * @param latencyMillis
+     * @param error
+     */
+    public synchronized void record(long latencyMillis, boolean error) {
+        boolean failed = error || latencyMillis > endpoint.getBreakerSlowCallThreshold();
+        switch (state) {
+            case HALF_OPEN:
+                trialInProgress = false;
+                if (failed) {
+                    open();
+                } else {
+                    resetWindow();
+                    transitionTo(State.CLOSED);
+                }
+                break;
+            case CLOSED:
+                if (outcomes.length == 0) {
+                    return;
+                }
+                if (recorded == outcomes.length && outcomes[next]) {
+                    failures--;
+                }
+                outcomes[next] = failed;
+                next = (next + 1) % outcomes.length;
+                recorded = Math.min(recorded + 1, outcomes.length);
+                if (failed) {
+                    failures++;
+                }
+                if (recorded == outcomes.length && failures * 100 >= endpoint.getBreakerFailureRate() * recorded) {
+                    open();
+                }
+                break;
+            case OPEN:
+            default:
+                // Late answers of requests sent before the breaker opened
+                break;
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        resetWindow();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (state == newState) {
+            return;
+        }
+        log.warn("Circuit breaker of Jira endpoint {} changed from {} to {}", name, state, newState);
+        state = newState;
+        onTransition.accept(name, newState);
+    }
+}
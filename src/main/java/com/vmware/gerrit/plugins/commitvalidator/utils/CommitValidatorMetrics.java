@@ -0,0 +1,99 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Counter3;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and result metrics of commit validation, submit rules and Jira requests, exported
+ * through Gerrit's metric system
+ */
+@Singleton
+public class CommitValidatorMetrics {
+    /**
+     * Parts of a commit validation that are timed separately
+     */
+    public enum Stage {
+        RULES, SKIP_LIST, PARSING, REGEX, ENDPOINT
+    }
+
+    private final Timer0 validationLatency;
+    private final Timer1<Stage> stageLatency;
+    private final Counter3<String, String, String> validationResults;
+    private final Timer0 submitRuleLatency;
+    private final Timer1<String> jiraRequestLatency;
+    private final Counter1<String> jiraRequestErrors;
+
+    @Inject
+    public CommitValidatorMetrics(MetricMaker metricMaker) {
+        Field<String> endpointField = Field.ofString("endpoint", Field.ignoreMetadata())
+                .description("Jira endpoint name").build();
+
+        this.validationLatency = metricMaker.newTimer("validation/latency",
+                new Description("Time to validate a received commit").setCumulative().setUnit(Description.Units.MILLISECONDS));
+        this.stageLatency = metricMaker.newTimer("validation/stage_latency",
+                new Description("Time spent in each stage of a commit validation").setCumulative()
+                        .setUnit(Description.Units.MILLISECONDS),
+                Field.ofEnum(Stage.class, "stage", Field.ignoreMetadata()).description("Validation stage").build());
+        this.validationResults = metricMaker.newCounter("validation/result_count",
+                new Description("Validated commits by project, commit template and result").setRate().setUnit("commits"),
+                Field.ofString("project", Field.ignoreMetadata()).description("Project name").build(),
+                Field.ofString("template", Field.ignoreMetadata()).description("Commit template name").build(),
+                Field.ofString("result", Field.ignoreMetadata()).description("accepted or rejected").build());
+        this.submitRuleLatency = metricMaker.newTimer("submit_rule/latency",
+                new Description("Time to evaluate the submit rule of a change").setCumulative()
+                        .setUnit(Description.Units.MILLISECONDS));
+        this.jiraRequestLatency = metricMaker.newTimer("jira/request_latency",
+                new Description("Time of a Jira request per endpoint").setCumulative()
+                        .setUnit(Description.Units.MILLISECONDS),
+                endpointField);
+        this.jiraRequestErrors = metricMaker.newCounter("jira/error_count",
+                new Description("Failed Jira requests per endpoint").setRate().setUnit("errors"),
+                endpointField);
+    }
+
+    public Timer0.Context startValidation() {
+        return validationLatency.start();
+    }
+
+    public Timer1.Context<Stage> startStage(Stage stage) {
+        return stageLatency.start(stage);
+    }
+
+    public Timer0.Context startSubmitRule() {
+        return submitRuleLatency.start();
+    }
+
+    /**
+     * Counts a commit that was validated against a commit template
+     *
+     * @param project
+     * @param template
+     * @param accepted
+     */
+    public void countResult(String project, String template, boolean accepted) {
+        validationResults.increment(project, template, accepted ? "accepted" : "rejected");
+    }
+
+    /**
+     * Records a request sent to a Jira endpoint
+     *
+     * @param endpoint
+     * @param latencyMillis
+     * @param error
+     */
+    public void recordJiraRequest(String endpoint, long latencyMillis, boolean error) {
+        jiraRequestLatency.record(endpoint, latencyMillis, TimeUnit.MILLISECONDS);
+        if (error) {
+            jiraRequestErrors.increment(endpoint);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Config;
+
+import java.util.concurrent.*;
+
+/**
+ * Plugin-owned threads for blocking endpoint calls, so a slow endpoint never ties up the
+ * JVM-wide common ForkJoinPool or Gerrit's own queues. The I/O pool has a bounded queue and
+ * rejects work once it is full; a separate timer thread only schedules batch flushes.
+ */
+@Slf4j
+@Singleton
+public class EndpointExecutor implements LifecycleListener {
+    private final ThreadPoolExecutor ioExecutor;
+    private final ScheduledExecutorService timer;
+    private final Counter0 rejectedTasks;
+
+    @Inject
+    public EndpointExecutor(PluginConfigFactory cfg, MetricMaker metricMaker) {
+        this("CommitValidator-Endpoint",
+                getSize(cfg, Constants.CONFIG_EXECUTOR_THREADS, Constants.DEFAULT_EXECUTOR_THREADS),
+                getSize(cfg, Constants.CONFIG_EXECUTOR_QUEUE_SIZE, Constants.DEFAULT_EXECUTOR_QUEUE_SIZE),
+                metricMaker);
+    }
+
+    /**
+     * Creates threads of their own for endpoint calls outside of pushes, e.g. of an audit, so
+     * they do not compete with pushes for the plugin's shared queue. Exports no metrics.
+     *
+     * @param name prefix of the thread names
+     * @param threads
+     * @param queueSize
+     */
+    public EndpointExecutor(String name, int threads, int queueSize) {
+        this(name, threads, queueSize, new DisabledMetricMaker());
+    }
+
+    private EndpointExecutor(String name, int threads, int queueSize, MetricMaker metricMaker) {
+        this.ioExecutor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        this.ioExecutor.allowCoreThreadTimeOut(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-Timer").setDaemon(true).build());
+
+        metricMaker.newCallbackMetric("endpoint/queue_depth", Integer.class,
+                new Description("Endpoint calls waiting for a thread").setGauge().setUnit("tasks"),
+                () -> ioExecutor.getQueue().size());
+        metricMaker.newCallbackMetric("endpoint/active_threads", Integer.class,
+                new Description("Threads busy with endpoint calls").setGauge().setUnit("threads"),
+                ioExecutor::getActiveCount);
+        this.rejectedTasks = metricMaker.newCounter("endpoint/rejected_count",
+                new Description("Endpoint calls rejected because the queue was full").setRate().setUnit("tasks"));
+        log.info("Endpoint executor {} started with {} threads and a queue of {}", name, threads, queueSize);
+    }
+
+    private static int getSize(PluginConfigFactory cfg, String name, int defaultValue) {
+        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
+        return Math.max(1, pluginConfig.getInt(Constants.CONFIG_SECTION_EXECUTOR, null, name, defaultValue));
+    }
+
+    /**
+     * Runs a blocking endpoint call on the plugin's I/O threads
+     *
+     * @param task
+     * @throws RejectedExecutionException if the queue is full or the plugin is stopping
+     */
+    public void execute(Runnable task) {
+        try {
+            ioExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the task on the timer thread after the given delay. The task must not block;
+     * endpoint calls are handed over to {@link #execute}.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        timer.schedule(task, delay, unit);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        timer.shutdownNow();
+        ioExecutor.shutdown();
+    }
+}
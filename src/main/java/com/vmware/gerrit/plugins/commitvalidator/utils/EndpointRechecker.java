@@ -0,0 +1,118 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks values again that could not be verified while the commit was pushed, and comments on
+ * the change if they turn out to be invalid. The comment is posted on behalf of the uploader.
+ */
+@Slf4j
+@Singleton
+public class EndpointRechecker {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final GerritApi gerritApi;
+    private final OneOffRequestContext requestContext;
+    private final JiraIssueStatusCache jiraIssueStatusCache;
+    private final EndpointExecutor executor;
+
+    @Inject
+    public EndpointRechecker(GerritApi gerritApi, OneOffRequestContext requestContext,
+                             JiraIssueStatusCache jiraIssueStatusCache, EndpointExecutor executor) {
+        this.gerritApi = gerritApi;
+        this.requestContext = requestContext;
+        this.jiraIssueStatusCache = jiraIssueStatusCache;
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a re-check of a Jira issue that could not be verified during the push
+     *
+     * @param context
+     * @param entry
+     * @param endpoint
+     * @param issueId
+     * @param delay   in milliseconds
+     */
+    public void scheduleJiraRecheck(ValidationContext context, TemplateEntry entry, JiraEndpoint endpoint,
+                                    String issueId, long delay) {
+        if (context.getUploader() == null) {
+            log.warn("Project: {}, commit: {} - unable to re-check Jira issue {} as the uploader is unknown",
+                    context.getProject(), context.getCommit(), issueId);
+            return;
+        }
+        schedule(() -> recheckJira(context, entry, endpoint, issueId, 1), delay);
+    }
+
+    private void schedule(Runnable recheck, long delay) {
+        try {
+            executor.schedule(() -> {
+                try {
+                    executor.execute(recheck);
+                } catch (RejectedExecutionException e) {
+                    log.warn("Dropping a re-check as the endpoint queue is full");
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropping a re-check as the plugin is stopping");
+        }
+    }
+
+    private void recheckJira(ValidationContext context, TemplateEntry entry, JiraEndpoint endpoint,
+                             String issueId, int attempt) {
+        long deadline = System.currentTimeMillis() + endpoint.getConnectTimeout() + endpoint.getReadTimeout();
+        try {
+            JiraIssueStatus issueStatus = jiraIssueStatusCache.getIssueStatus(endpoint, issueId, deadline);
+            JiraUtils.isIssueIdValid(issueStatus, entry.getAllowedStatuses());
+            log.info("Project: {}, commit: {} - re-check of Jira issue {} passed",
+                    context.getProject(), context.getCommit(), issueId);
+        } catch (InvalidEntryException e) {
+            comment(context, String.format("Template entry '%s' could not be verified when this commit was pushed "
+                    + "and is not valid: %s", entry.getName(), e.getMessage()));
+        } catch (JiraException e) {
+            if (attempt < MAX_ATTEMPTS) {
+                log.info("Project: {}, commit: {} - Jira issue {} still cannot be verified, retrying: {}",
+                        context.getProject(), context.getCommit(), issueId, e.getMessage());
+                schedule(() -> recheckJira(context, entry, endpoint, issueId, attempt + 1),
+                        endpoint.getConnectTimeout() + endpoint.getReadTimeout());
+            } else {
+                log.warn("Project: {}, commit: {} - giving up re-check of Jira issue {}: {}",
+                        context.getProject(), context.getCommit(), issueId, e.getMessage());
+            }
+        }
+    }
+
+    private void comment(ValidationContext context, String message) {
+        try (ManualRequestContext ctx = requestContext.openAs(context.getUploader())) {
+            List<ChangeInfo> changes = gerritApi.changes()
+                    .query(String.format("commit:%s project:%s", context.getCommit(), context.getProject().get()))
+                    .get();
+            if (changes.isEmpty()) {
+                log.warn("Project: {}, commit: {} - no change found to report: {}",
+                        context.getProject(), context.getCommit(), message);
+            }
+            for (ChangeInfo change : changes) {
+                ReviewInput input = new ReviewInput().message(message);
+                input.tag = Constants.MESSAGE_TAG;
+                gerritApi.changes().id(change.id).revision(context.getCommit()).review(input);
+            }
+        } catch (RestApiException | RuntimeException e) {
+            log.error("Project: {}, commit: {} - unable to comment on change: {}",
+                    context.getProject(), context.getCommit(), e.getMessage());
+        }
+    }
+}
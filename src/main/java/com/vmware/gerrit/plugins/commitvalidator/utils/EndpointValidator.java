@@ -0,0 +1,31 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationResult;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationStatus;
+
+import java.util.List;
+
+/**
+ * Checks values that match the pattern of an entry with validateValueAgainstEndpoint set against
+ * the entry's endpoint
+ */
+public interface EndpointValidator {
+    /**
+     * Accepts every value without contacting any endpoint
+     */
+    EndpointValidator SKIP = (entry, value) ->
+            new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "Endpoint check skipped");
+
+    TemplateEntryValidationResult validate(TemplateEntry entry, String value);
+
+    /**
+     * Called with all values of an entry before they are validated one by one, so lookups can be
+     * started together
+     *
+     * @param entry
+     * @param values
+     */
+    default void prefetch(TemplateEntry entry, List<String> values) {
+    }
+}
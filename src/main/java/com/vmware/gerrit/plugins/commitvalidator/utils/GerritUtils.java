@@ -1,43 +1,227 @@
 package com.vmware.gerrit.plugins.commitvalidator.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.common.data.GroupReference;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
 import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.common.AccountInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.account.Emails;
+import com.google.gerrit.server.account.GroupBackend;
+import com.google.gerrit.server.account.GroupBackends;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.vmware.gerrit.plugins.commitvalidator.entities.MembershipRules;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ResolvedUsers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Resolves "group ..." and "user ..." rules to a group UUID or an account, and checks users
+ * against them through their effective groups. Nested and external groups, e.g. LDAP groups,
+ * are covered without enumerating any group. Each rule is resolved once and cached, with the
+ * cache expiry as a fallback for renamed groups.
+ */
+@Slf4j
+@Singleton
 public class GerritUtils {
-    private GerritApi gerritApi;
+    public static final String CACHE_NAME = "resolved_users";
 
-    public GerritUtils(GerritApi gerritApi) {
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(CACHE_NAME, String.class, ResolvedUsers.class)
+                        .maximumWeight(1024)
+                        .expireAfterWrite(Duration.ofMinutes(10));
+            }
+        };
+    }
+
+    private final GerritApi gerritApi;
+    private final GroupBackend groupBackend;
+    private final IdentifiedUser.GenericFactory userFactory;
+    private final Emails emails;
+    private final Cache<String, ResolvedUsers> resolvedUsers;
+    private final AtomicLong membershipVersion = new AtomicLong();
+
+    @Inject
+    public GerritUtils(GerritApi gerritApi, GroupBackend groupBackend, IdentifiedUser.GenericFactory userFactory,
+                       Emails emails, @Named(CACHE_NAME) Cache<String, ResolvedUsers> resolvedUsers) {
         this.gerritApi = gerritApi;
+        this.groupBackend = groupBackend;
+        this.userFactory = userFactory;
+        this.emails = emails;
+        this.resolvedUsers = resolvedUsers;
     }
 
-    public List<String> getAllUsers(List<String> additionalCRApprovers) throws RestApiException {
-        // Get all users of the
-        List<String> allUsernames = new ArrayList<>();
+    /**
+     * Returns the groups and accounts the given rules resolve to
+     *
+     * @param rules
+     * @return
+     * @throws RestApiException
+     */
+    public MembershipRules resolveRules(List<String> rules) throws RestApiException {
+        if (rules.isEmpty()) {
+            return MembershipRules.empty();
+        }
+        ImmutableSet.Builder<AccountGroup.UUID> groups = ImmutableSet.builder();
+        List<AccountIdSet> accounts = new ArrayList<>(rules.size());
+        for (String rule : rules) {
+            ResolvedUsers resolved = resolve(rule);
+            if (resolved.getGroupUuid() != null) {
+                groups.add(AccountGroup.uuid(resolved.getGroupUuid()));
+            }
+            accounts.add(resolved.getAccountIds());
+        }
+        return new MembershipRules(groups.build(), AccountIdSet.union(accounts));
+    }
 
-        for (String additionalApprover : additionalCRApprovers) {
+    /**
+     * Checks whether the account is named by a "user" rule or is a member of a "group" rule,
+     * directly or through nested groups
+     *
+     * @param rules
+     * @param accountId
+     * @return
+     */
+    public boolean isMember(MembershipRules rules, Account.Id accountId) {
+        if (rules.getAccounts().contains(accountId.get())) {
+            return true;
+        }
+        return !rules.getGroups().isEmpty()
+                && userFactory.create(accountId).getEffectiveGroups().containsAnyOf(rules.getGroups());
+    }
 
-            String[] userGroupIdentifier = additionalApprover.split(" ");
-            if (userGroupIdentifier[0].equals("group")) {
-                String groupName = userGroupIdentifier[1];
+    /**
+     * Checks whether the account registered with the given email is matched by the rules. An email
+     * that belongs to no account, or to several, does not match.
+     *
+     * @param rules
+     * @param email
+     * @return
+     * @throws RestApiException if the account could not be looked up
+     */
+    public boolean isMember(MembershipRules rules, String email) throws RestApiException {
+        if (rules.isEmpty()) {
+            return false;
+        }
+        Optional<Account.Id> accountId = getAccountByEmail(email);
+        return accountId.isPresent() && isMember(rules, accountId.get());
+    }
 
-                List<AccountInfo> members = null;
+    /**
+     * Checks whether the account registered with the given email is matched by any of the rules
+     *
+     * @param rules
+     * @param email
+     * @return
+     * @throws RestApiException
+     */
+    public boolean containsUser(List<String> rules, String email) throws RestApiException {
+        return isMember(resolveRules(rules), email);
+    }
 
-                members = gerritApi.groups().id(groupName).members();
+    /**
+     * Looks up the account with the given email through its external IDs
+     *
+     * @param email
+     * @return the account, empty if none or several accounts use the email
+     * @throws RestApiException if the lookup failed
+     */
+    public Optional<Account.Id> getAccountByEmail(String email) throws RestApiException {
+        if (StringUtils.isEmpty(email)) {
+            return Optional.empty();
+        }
+        try {
+            Set<Account.Id> accountIds = emails.getAccountFor(email);
+            if (accountIds.size() != 1) {
+                log.debug("Email {} belongs to {} accounts", email, accountIds.size());
+                return Optional.empty();
+            }
+            return Optional.of(accountIds.iterator().next());
+        } catch (IOException e) {
+            throw new RestApiException("Unable to look up the account of " + email, e);
+        }
+    }
+
+    /**
+     * Notes a reindexed group. Memberships checked before may have changed, also those of groups
+     * including this one, so results depending on them must be computed again.
+     *
+     * @param groupUuid
+     */
+    public void invalidateGroup(String groupUuid) {
+        // The group may have been renamed
+        resolvedUsers.asMap().entrySet().removeIf(entry -> groupUuid.equals(entry.getValue().getGroupUuid()));
+        membershipVersion.incrementAndGet();
+    }
 
-                List<String> membersUsernames = members.parallelStream().map(accountInfo -> {
-                    return accountInfo.username;
-                }).collect(Collectors.toList());
-                allUsernames.addAll(membersUsernames);
-            } else if (userGroupIdentifier[0].equals("user")) {
-                String username = userGroupIdentifier[1];
-                allUsernames.add(gerritApi.accounts().id(username).get().username);
+    /**
+     * Returns a number that changes whenever a group was reindexed after a membership change
+     *
+     * @return
+     */
+    public long getMembershipVersion() {
+        return membershipVersion.get();
+    }
+
+    private ResolvedUsers resolve(String rule) throws RestApiException {
+        try {
+            return resolvedUsers.get(rule, () -> load(rule));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RestApiException) {
+                throw (RestApiException) e.getCause();
             }
+            throw new RestApiException("Unable to resolve " + rule, e.getCause());
+        }
+    }
+
+    private ResolvedUsers load(String rule) throws RestApiException {
+        String[] userGroupIdentifier = rule.split(" ", 2);
+        if (userGroupIdentifier.length < 2) {
+            return new ResolvedUsers(null, AccountIdSet.empty());
+        }
+        if (userGroupIdentifier[0].equals("group")) {
+            AccountGroup.UUID groupUuid = findGroup(userGroupIdentifier[1].trim());
+            log.debug("Resolved group {} to {}", userGroupIdentifier[1], groupUuid);
+            return new ResolvedUsers(groupUuid == null ? null : groupUuid.get(), AccountIdSet.empty());
+        } else if (userGroupIdentifier[0].equals("user")) {
+            Integer accountId = gerritApi.accounts().id(userGroupIdentifier[1].trim()).get()._accountId;
+            return new ResolvedUsers(null, accountId == null ? AccountIdSet.empty()
+                    : AccountIdSet.of(Collections.singleton(accountId)));
+        }
+        return new ResolvedUsers(null, AccountIdSet.empty());
+    }
+
+    /**
+     * Finds a group by name in any group backend, or by UUID
+     *
+     * @param group
+     * @return the group UUID, null if there is no such group
+     */
+    private AccountGroup.UUID findGroup(String group) {
+        GroupReference reference = GroupBackends.findExactSuggestion(groupBackend, group);
+        if (reference != null) {
+            return reference.getUUID();
+        }
+        AccountGroup.UUID uuid = AccountGroup.uuid(group);
+        if (groupBackend.handles(uuid) && groupBackend.get(uuid) != null) {
+            return uuid;
         }
-        return allUsernames;
+        log.warn("Group {} of the project rules does not exist", group);
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,291 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.entities.AuditReport;
+import com.vmware.gerrit.plugins.commitvalidator.entities.CommitTemplate;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import com.vmware.gerrit.plugins.commitvalidator.entities.InvalidEntryException;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationResult;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationStatus;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_COMMIT;
+
+/**
+ * Validates the existing history of a repository against a commit template. One thread walks the
+ * history and hands commit IDs to the workers through a bounded queue; the workers read and
+ * validate the messages. Commit bodies are never retained, so memory stays bounded by the queue
+ * and the walk's per-commit bookkeeping, however long the history is. Endpoint lookups run on
+ * threads of the audit's own, so a long audit does not fill the queue that pushes depend on.
+ */
+@Slf4j
+@Singleton
+public class HistoryAuditor {
+    // Commits queued per worker before the walk waits for the workers to catch up
+    private static final int QUEUE_SIZE_PER_WORKER = 256;
+    // How often the walk checks that the workers are still running while the queue is full
+    private static final long QUEUE_POLL_MILLIS = 500;
+    private static final ObjectId END = ObjectId.zeroId();
+
+    private final CommitValidatorConfig pluginConfig;
+    private final JiraIssueStatusCache jiraIssueStatusCache;
+    private final JiraClientRegistry jiraClientRegistry;
+    private final TemplateValidator templateValidator;
+
+    @Inject
+    public HistoryAuditor(CommitValidatorConfig pluginConfig, JiraIssueStatusCache jiraIssueStatusCache,
+                          JiraClientRegistry jiraClientRegistry, TemplateValidator templateValidator) {
+        this.pluginConfig = pluginConfig;
+        this.jiraIssueStatusCache = jiraIssueStatusCache;
+        this.jiraClientRegistry = jiraClientRegistry;
+        this.templateValidator = templateValidator;
+    }
+
+    /**
+     * Validates all commits reachable from the given starting points
+     *
+     * @param repository
+     * @param starts
+     * @param commitTemplate
+     * @param checkEndpoints whether values are checked against endpoints, or only against patterns
+     * @param includeMerges
+     * @param threads number of workers validating commits
+     * @param maxCommits maximum number of commits to validate, 0 for all
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public AuditReport audit(Repository repository, Collection<ObjectId> starts, CommitTemplate commitTemplate,
+                             boolean checkEndpoints, boolean includeMerges, int threads, long maxCommits)
+            throws IOException, InterruptedException {
+        BlockingQueue<ObjectId> queue = new ArrayBlockingQueue<>(threads * QUEUE_SIZE_PER_WORKER);
+        ExecutorService workers = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("CommitValidator-Audit-%d").setDaemon(true).build());
+        int endpointThreads = Math.max(1, pluginConfig.getSnapshot().getSource().getInt(Constants.CONFIG_SECTION_EXECUTOR,
+                null, Constants.CONFIG_EXECUTOR_AUDIT_THREADS, Constants.DEFAULT_EXECUTOR_AUDIT_THREADS));
+        // Each worker waits for at most one lookup at a time, so the queue never needs more room
+        EndpointExecutor endpointExecutor = checkEndpoints
+                ? new EndpointExecutor("CommitValidator-Audit-Endpoint", endpointThreads, threads) : null;
+        Map<String, JiraIssueBatcher> batchers = new ConcurrentHashMap<>();
+        boolean completed = false;
+        try {
+            List<Future<AuditReport>> results = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                EndpointValidator endpointValidator = checkEndpoints
+                        ? new AuditEndpointValidator(endpoint -> batchers.computeIfAbsent(endpoint.getName(),
+                        name -> jiraClientRegistry.newBatcher(endpoint, endpointExecutor)))
+                        : EndpointValidator.SKIP;
+                results.add(workers.submit(() -> validateCommits(repository, queue, commitTemplate, endpointValidator)));
+            }
+
+            AuditReport report = new AuditReport();
+            long queued = 0;
+            try (RevWalk walk = new RevWalk(repository)) {
+                // Only IDs and parents are needed to walk, messages are read by the workers
+                walk.setRetainBody(false);
+                walk.sort(RevSort.NONE);
+                for (ObjectId start : starts) {
+                    walk.markStart(walk.parseCommit(start));
+                }
+                for (RevCommit commit : walk) {
+                    if (maxCommits > 0 && queued >= maxCommits) {
+                        break;
+                    }
+                    if (!includeMerges && commit.getParentCount() > 1) {
+                        report.addSkippedMerge();
+                        continue;
+                    }
+                    enqueue(queue, commit.copy(), results);
+                    queued++;
+                }
+            }
+            for (int i = 0; i < threads; i++) {
+                enqueue(queue, END, results);
+            }
+
+            for (Future<AuditReport> result : results) {
+                report.merge(result.get());
+            }
+            completed = true;
+            return report;
+        } catch (ExecutionException e) {
+            throw new IOException("Audit worker failed", e.getCause());
+        } finally {
+            if (completed) {
+                workers.shutdown();
+            } else {
+                workers.shutdownNow();
+            }
+            if (endpointExecutor != null) {
+                endpointExecutor.stop();
+            }
+            batchers.values().forEach(JiraClientRegistry::close);
+        }
+    }
+
+    /**
+     * Hands a commit to the workers, waiting while the queue is full. Fails instead of waiting
+     * forever if a worker stopped before the end marker, as nothing may take from the queue anymore.
+     *
+     * @param queue
+     * @param id
+     * @param results
+     * @throws InterruptedException
+     * @throws ExecutionException if a worker failed
+     */
+    private static void enqueue(BlockingQueue<ObjectId> queue, ObjectId id, List<Future<AuditReport>> results)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(id, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (Future<AuditReport> result : results) {
+                if (result.isDone()) {
+                    result.get();
+                    throw new ExecutionException(new IllegalStateException("Audit worker stopped early"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates the commits taken from the queue until the end marker is reached
+     *
+     * @param repository
+     * @param queue
+     * @param commitTemplate
+     * @param endpointValidator
+     * @return the report of the commits validated by this worker
+     * @throws InterruptedException
+     */
+    private AuditReport validateCommits(Repository repository, BlockingQueue<ObjectId> queue,
+                                        CommitTemplate commitTemplate, EndpointValidator endpointValidator)
+            throws InterruptedException {
+        AuditReport report = new AuditReport();
+        try (ObjectReader reader = repository.newObjectReader()) {
+            for (ObjectId id = queue.take(); !END.equals(id); id = queue.take()) {
+                byte[] raw;
+                try {
+                    raw = reader.open(id, OBJ_COMMIT).getCachedBytes();
+                } catch (IOException e) {
+                    log.warn("Unable to read commit {} during audit: {}", id.name(), e.getMessage());
+                    report.addUnreadable();
+                    continue;
+                }
+                try {
+                    String subject = getSubject(raw);
+                    // Audits are not counted in the validation metrics of pushed commits
+                    report.add(id.name(), subject, templateValidator.validateWithoutMetrics(commitTemplate, subject,
+                            getFullMessage(raw), endpointValidator));
+                } catch (RuntimeException e) {
+                    // Keep taking from the queue, the walk would otherwise wait for this worker forever
+                    log.warn("Unable to validate commit {} during audit: {}", id.name(), e.getMessage(), e);
+                    report.addFailed();
+                }
+            }
+        }
+        if (endpointValidator instanceof AuditEndpointValidator) {
+            report.addUnverifiedValues(((AuditEndpointValidator) endpointValidator).unverified);
+        }
+        return report;
+    }
+
+    /**
+     * Checks values against the entry's endpoint for one worker. Values that cannot be checked
+     * because the endpoint failed are accepted and counted as unverified.
+     */
+    private class AuditEndpointValidator implements EndpointValidator {
+        private final Function<JiraEndpoint, JiraIssueBatcher> batchers;
+        private long unverified;
+
+        AuditEndpointValidator(Function<JiraEndpoint, JiraIssueBatcher> batchers) {
+            this.batchers = batchers;
+        }
+
+        @Override
+        public TemplateEntryValidationResult validate(TemplateEntry entry, String value) {
+            JiraEndpoint jiraEndpoint = pluginConfig.getJiraEndpointConfig(entry.getEndpointName());
+            switch (entry.getEndpointType()) {
+                case JIRA:
+                    if (jiraEndpoint == null) {
+                        break;
+                    }
+                    String issueId = JiraUtils.toIssueId(value);
+                    try {
+                        JiraIssueStatus issueStatus = jiraIssueStatusCache.getIssueStatus(jiraEndpoint,
+                                batchers.apply(jiraEndpoint), issueId,
+                                System.currentTimeMillis() + pluginConfig.getSnapshot().getValidationTimeout());
+                        JiraUtils.isIssueIdValid(issueStatus, entry.getAllowedStatuses());
+                    } catch (InvalidEntryException e) {
+                        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, e.getMessage());
+                    } catch (JiraException e) {
+                        unverified++;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+        }
+    }
+
+    /**
+     * Returns the first paragraph of the commit message on one line, like {@link RevCommit#getShortMessage()}
+     *
+     * @param raw
+     * @return
+     */
+    private static String getSubject(byte[] raw) {
+        int messageStart = RawParseUtils.commitMessage(raw, 0);
+        if (messageStart < 0) {
+            return "";
+        }
+        int subjectEnd = RawParseUtils.endOfParagraph(raw, messageStart);
+        return RawParseUtils.decode(getEncoding(raw), raw, messageStart, subjectEnd).replaceAll("\r?\n", " ").trim();
+    }
+
+    private static String getFullMessage(byte[] raw) {
+        int messageStart = RawParseUtils.commitMessage(raw, 0);
+        if (messageStart < 0) {
+            return "";
+        }
+        return RawParseUtils.decode(getEncoding(raw), raw, messageStart, raw.length);
+    }
+
+    private static Charset getEncoding(byte[] raw) {
+        try {
+            return RawParseUtils.parseEncoding(raw);
+        } catch (RuntimeException e) {
+            // Unknown encoding header, decode() falls back to the common encodings
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter2;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out one long-lived Jira client and lookup batcher per configured endpoint. They are
+ * replaced when the endpoint definition changes with a config reload, and closed on plugin stop.
+ * The circuit breaker of an endpoint outlives such reloads so its state is not lost.
+ */
+@Slf4j
+@Singleton
+public class JiraClientRegistry implements LifecycleListener {
+    private final Map<String, JiraIssueBatcher> batchers = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final EndpointExecutor executor;
+    private final CommitValidatorMetrics metrics;
+    private final Counter2<String, String> breakerTransitions;
+
+    @Inject
+    public JiraClientRegistry(EndpointExecutor executor, CommitValidatorMetrics metrics, MetricMaker metricMaker) {
+        this.executor = executor;
+        this.metrics = metrics;
+        this.breakerTransitions = metricMaker.newCounter("jira/circuit_breaker/transition_count",
+                new Description("Circuit breaker state changes per Jira endpoint").setRate().setUnit("transitions"),
+                Field.ofString("endpoint", Field.ignoreMetadata()).description("Jira endpoint name").build(),
+                Field.ofString("state", Field.ignoreMetadata()).description("New breaker state").build());
+        metricMaker.newCallbackMetric("jira/circuit_breaker/open_endpoints", Integer.class,
+                new Description("Jira endpoints whose circuit breaker is not closed").setGauge().setUnit("endpoints"),
+                () -> (int) circuitBreakers.values().stream()
+                        .filter(breaker -> breaker.getState() != CircuitBreaker.State.CLOSED).count());
+    }
+
+    /**
+     * Returns the client for given endpoint, creating it on first use
+     *
+     * @param endpoint
+     * @return
+     */
+    public JiraUtils getClient(JiraEndpoint endpoint) {
+        return getBatcher(endpoint).getClient();
+    }
+
+    /**
+     * Returns the lookup batcher for given endpoint, creating it on first use
+     *
+     * @param endpoint
+     * @return
+     */
+    public JiraIssueBatcher getBatcher(JiraEndpoint endpoint) {
+        JiraIssueBatcher batcher = batchers.get(endpoint.getName());
+        if (batcher != null && batcher.getClient().getEndpoint() == endpoint) {
+            return batcher;
+        }
+
+        return batchers.compute(endpoint.getName(), (name, current) -> {
+            if (current != null && current.getClient().getEndpoint() == endpoint) {
+                return current;
+            }
+            close(current);
+            log.info("Creating Jira client for endpoint {} at {}", name, endpoint.getUrl());
+            CircuitBreaker breaker = getCircuitBreaker(endpoint);
+            breaker.reconfigure(endpoint);
+            return new JiraIssueBatcher(new JiraUtils(endpoint), executor, breaker, metrics);
+        });
+    }
+
+    /**
+     * Creates a lookup batcher for given endpoint that runs on the given executor instead of the
+     * shared one. It shares the endpoint's circuit breaker. The caller closes it when done.
+     *
+     * @param endpoint
+     * @param executor
+     * @return
+     */
+    public JiraIssueBatcher newBatcher(JiraEndpoint endpoint, EndpointExecutor executor) {
+        return new JiraIssueBatcher(new JiraUtils(endpoint), executor, getCircuitBreaker(endpoint), metrics);
+    }
+
+    private CircuitBreaker getCircuitBreaker(JiraEndpoint endpoint) {
+        return circuitBreakers.computeIfAbsent(endpoint.getName(), n -> new CircuitBreaker(endpoint,
+                (endpointName, state) -> breakerTransitions.increment(endpointName, state.name())));
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        batchers.values().forEach(JiraClientRegistry::close);
+        batchers.clear();
+    }
+
+    /**
+     * Closes the client of a batcher, logging failures
+     *
+     * @param batcher may be null
+     */
+    public static void close(JiraIssueBatcher batcher) {
+        if (batcher == null) {
+            return;
+        }
+        try {
+            batcher.close();
+        } catch (IOException e) {
+            log.warn("Failed to close Jira client for endpoint {}: {}",
+                    batcher.getClient().getEndpoint().getName(), e.getMessage());
+        }
+    }
+}
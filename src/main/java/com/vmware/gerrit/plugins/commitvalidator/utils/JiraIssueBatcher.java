@@ -0,0 +1,155 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects issue lookups for one Jira endpoint over a short window and resolves them with a
+ * single search request. Concurrent lookups of the same issue share one pending result.
+ */
+@Slf4j
+public class JiraIssueBatcher implements Closeable {
+    private final JiraUtils client;
+    private final EndpointExecutor executor;
+    private final CircuitBreaker circuitBreaker;
+    private final CommitValidatorMetrics metrics;
+    private final Map<String, CompletableFuture<JiraIssueStatus>> inFlight = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private Set<String> pending = new LinkedHashSet<>();
+
+    public JiraIssueBatcher(JiraUtils client, EndpointExecutor executor, CircuitBreaker circuitBreaker,
+                            CommitValidatorMetrics metrics) {
+        this.client = client;
+        this.executor = executor;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+    }
+
+    public JiraUtils getClient() {
+        return client;
+    }
+
+    /**
+     * Queues a lookup of the given issue, joining an already pending lookup of the same issue.
+     * Fails right away with {@link CircuitBreaker.OpenException} while the endpoint's breaker is open.
+     *
+     * @param issueId
+     * @return
+     */
+    public CompletableFuture<JiraIssueStatus> lookup(String issueId) {
+        CompletableFuture<JiraIssueStatus> running = inFlight.get(issueId);
+        if (running != null) {
+            return running;
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            CompletableFuture<JiraIssueStatus> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new CircuitBreaker.OpenException(client.getEndpoint().getName()));
+            return rejected;
+        }
+
+        CompletableFuture<JiraIssueStatus> created = new CompletableFuture<>();
+        CompletableFuture<JiraIssueStatus> existing = inFlight.putIfAbsent(issueId, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        Set<String> fullBatch = null;
+        boolean firstInBatch;
+        synchronized (lock) {
+            pending.add(issueId);
+            firstInBatch = pending.size() == 1;
+            if (pending.size() >= client.getEndpoint().getBatchSize()) {
+                fullBatch = pending;
+                pending = new LinkedHashSet<>();
+            }
+        }
+
+        long window = client.getEndpoint().getBatchWindow();
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        } else if (firstInBatch && window <= 0) {
+            dispatchPending();
+        } else if (firstInBatch) {
+            try {
+                executor.schedule(this::dispatchPending, window, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Plugin is stopping, do not wait for the window
+                dispatchPending();
+            }
+        }
+        return created;
+    }
+
+    private void dispatchPending() {
+        Set<String> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashSet<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Set<String> batch) {
+        try {
+            executor.execute(() -> resolve(batch));
+        } catch (RejectedExecutionException e) {
+            log.warn("Unable to look up Jira issues {} as the endpoint queue is full", batch);
+            circuitBreaker.record(0, true);
+            JiraException error = new JiraException(String.format(
+                    "Too many pending lookups for Jira endpoint %s", client.getEndpoint().getName()));
+            for (String issueId : batch) {
+                complete(issueId, null, error);
+            }
+        }
+    }
+
+    private void resolve(Set<String> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            log.debug("Fetching status of Jira issues {} from endpoint {}", batch, client.getEndpoint().getName());
+            Map<String, JiraIssueStatus> statuses = client.getIssueStatuses(batch);
+            long latency = System.currentTimeMillis() - start;
+            circuitBreaker.record(latency, false);
+            metrics.recordJiraRequest(client.getEndpoint().getName(), latency, false);
+            for (String issueId : batch) {
+                complete(issueId, statuses.get(issueId), null);
+            }
+        } catch (JiraException | RuntimeException e) {
+            long latency = System.currentTimeMillis() - start;
+            circuitBreaker.record(latency, true);
+            metrics.recordJiraRequest(client.getEndpoint().getName(), latency, true);
+            for (String issueId : batch) {
+                complete(issueId, null, e);
+            }
+        }
+    }
+
+    private void complete(String issueId, JiraIssueStatus status, Throwable error) {
+        CompletableFuture<JiraIssueStatus> future = inFlight.remove(issueId);
+        if (future == null) {
+            return;
+        }
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(status);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
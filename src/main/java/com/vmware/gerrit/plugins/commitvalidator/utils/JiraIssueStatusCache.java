@@ -0,0 +1,169 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.cache.Cache;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.vmware.gerrit.plugins.commitvalidator.entities.CircuitBreakerFallback;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Caches Jira issue statuses per endpoint. Found issues expire after the cache's maxAge,
+ * "not found" results after the endpoint's notFoundCacheTtl. The cache is persisted on disk, so
+ * statuses survive restarts and plugin reloads. Hit, miss and eviction counts and the disk usage
+ * are reported through Gerrit's cache metrics and show-caches.
+ */
+@Slf4j
+@Singleton
+public class JiraIssueStatusCache {
+    public static final String CACHE_NAME = "jira_issue_status";
+    // Bump when the meaning of cached entries changes, so entries stored on disk are dropped
+    private static final int CACHE_VERSION = 1;
+
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                persist(CACHE_NAME, String.class, JiraIssueStatus.class)
+                        .version(CACHE_VERSION)
+                        .keySerializer(StringCacheSerializer.INSTANCE)
+                        .valueSerializer(JiraIssueStatusSerializer.INSTANCE)
+                        .maximumWeight(4096)
+                        .diskLimit(16 * 1024 * 1024)
+                        .expireAfterWrite(Duration.ofMinutes(10));
+            }
+        };
+    }
+
+    private final Cache<String, JiraIssueStatus> cache;
+    private final JiraClientRegistry jiraClientRegistry;
+
+    @Inject
+    public JiraIssueStatusCache(@Named(CACHE_NAME) Cache<String, JiraIssueStatus> cache,
+                                JiraClientRegistry jiraClientRegistry) {
+        this.cache = cache;
+        this.jiraClientRegistry = jiraClientRegistry;
+    }
+
+    /**
+     * Returns the status of given issue, querying Jira only if there is no fresh cached result.
+     * A lookup that is still running at the deadline keeps going and fills the cache when done.
+     *
+     * @param endpoint
+     * @param issueId
+     * @param deadline point in time after which the lookup is no longer waited for
+     * @return
+     * @throws JiraException if Jira failed or did not answer before the deadline
+     */
+    public JiraIssueStatus getIssueStatus(JiraEndpoint endpoint, String issueId, long deadline) throws JiraException {
+        return getIssueStatus(endpoint, jiraClientRegistry.getBatcher(endpoint), issueId, deadline);
+    }
+
+    /**
+     * Returns the status of given issue like {@link #getIssueStatus(JiraEndpoint, String, long)},
+     * querying Jira through the given batcher
+     *
+     * @param endpoint
+     * @param batcher
+     * @param issueId
+     * @param deadline
+     * @return
+     * @throws JiraException
+     */
+    public JiraIssueStatus getIssueStatus(JiraEndpoint endpoint, JiraIssueBatcher batcher, String issueId,
+                                          long deadline) throws JiraException {
+        String key = cacheKey(endpoint, issueId);
+
+        // Negative results are kept for a shorter time than the cache's own expiry
+        JiraIssueStatus cached = cache.getIfPresent(key);
+        if (isFresh(endpoint, cached)) {
+            return cached;
+        }
+
+        CompletableFuture<JiraIssueStatus> lookup = batcher.lookup(issueId);
+        lookup.thenAccept(status -> cache.put(key, status));
+        try {
+            return await(endpoint, lookup, deadline);
+        } catch (CircuitBreaker.OpenException e) {
+            if (cached != null && endpoint.getBreakerFallback() == CircuitBreakerFallback.CACHED) {
+                log.debug("Using outdated status of Jira issue {} as endpoint {} is unavailable", issueId, endpoint.getName());
+                return cached;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts batched lookups for all given issues that are not cached yet, so that a following
+     * {@link #getIssueStatus} for each of them shares one Jira request. A single issue is looked
+     * up as well; a following {@link #getIssueStatus} joins the running lookup.
+     *
+     * @param endpoint
+     * @param issueIds
+     * @return the lookups started, each completing once its status is cached
+     */
+    public List<CompletableFuture<JiraIssueStatus>> prefetch(JiraEndpoint endpoint, Collection<String> issueIds) {
+        if (issueIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        JiraIssueBatcher batcher = jiraClientRegistry.getBatcher(endpoint);
+        List<CompletableFuture<JiraIssueStatus>> lookups = new ArrayList<>();
+        for (String issueId : issueIds) {
+            String key = cacheKey(endpoint, issueId);
+            // getIfPresent also finds entries that are only on disk, e.g. after a restart
+            if (!isFresh(endpoint, cache.getIfPresent(key))) {
+                lookups.add(batcher.lookup(issueId).thenApply(status -> {
+                    cache.put(key, status);
+                    return status;
+                }));
+            }
+        }
+        return lookups;
+    }
+
+    private static boolean isFresh(JiraEndpoint endpoint, JiraIssueStatus cached) {
+        return cached != null && (cached.isFound()
+                || System.currentTimeMillis() - cached.getFetchedAt() <= endpoint.getNotFoundCacheTtl());
+    }
+
+    private static JiraIssueStatus await(JiraEndpoint endpoint, CompletableFuture<JiraIssueStatus> lookup,
+                                         long deadline) throws JiraException {
+        try {
+            return lookup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while waiting for Jira", e);
+        } catch (ExecutionException e) {
+            throw asJiraException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new JiraException(String.format("Jira endpoint %s did not answer in time", endpoint.getName()), e);
+        }
+    }
+
+    private static JiraException asJiraException(Throwable cause) {
+        if (cause instanceof JiraException) {
+            return (JiraException) cause;
+        }
+        return new JiraException(cause.getMessage(), cause);
+    }
+
+    private static String cacheKey(JiraEndpoint endpoint, String issueId) {
+        return endpoint.getName() + "/" + issueId;
+    }
+}
@@ -0,0 +1,55 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Stores a {@link JiraIssueStatus} in the on-disk cache as a format version byte, a found flag,
+ * the fetch time, the issue ID and, for found issues, the status name. The fetch time is kept so
+ * the not-found TTL still applies to entries read back after a restart.
+ */
+public enum JiraIssueStatusSerializer implements CacheSerializer<JiraIssueStatus> {
+    INSTANCE;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_FOUND = 1;
+
+    @Override
+    public byte[] serialize(JiraIssueStatus issueStatus) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(issueStatus.isFound() ? FLAG_FOUND : 0);
+            out.writeLong(issueStatus.getFetchedAt());
+            out.writeUTF(issueStatus.getIssueId());
+            if (issueStatus.isFound()) {
+                out.writeUTF(issueStatus.getStatus());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize " + issueStatus, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public JiraIssueStatus deserialize(byte[] in) {
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(in))) {
+            int version = data.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported Jira issue status format " + version);
+            }
+            boolean found = (data.readUnsignedByte() & FLAG_FOUND) != 0;
+            long fetchedAt = data.readLong();
+            String issueId = data.readUTF();
+            return new JiraIssueStatus(issueId, found ? data.readUTF() : null, fetchedAt);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to deserialize Jira issue status", e);
+        }
+    }
+}
@@ -1,45 +1,281 @@
 package com.vmware.gerrit.plugins.commitvalidator.utils;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.vmware.gerrit.plugins.commitvalidator.entities.InvalidEntryException;
-import net.rcarz.jiraclient.*;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import net.rcarz.jiraclient.JiraException;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
 
-public class JiraUtils {
-    private String url;
-    private String username;
-    private String password;
+/**
+ * Long-lived Jira REST client for a single endpoint. Connections are pooled and kept alive
+ * between lookups, and only the status field of an issue is requested and parsed.
+ */
+public class JiraUtils implements Closeable {
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final String ISSUE_API_PATH = "/rest/api/2/issue/";
+    private static final String SEARCH_API_PATH = "/rest/api/2/search";
+    private static final String SERVER_INFO_API_PATH = "/rest/api/2/serverInfo";
 
-    public JiraUtils(String url, String username, String password) {
-        this.url = url;
-        this.username = username;
-        this.password = password;
+    private final JiraEndpoint endpoint;
+    private final String baseUrl;
+    private final String authorization;
+    private final CloseableHttpClient httpClient;
+
+    public JiraUtils(JiraEndpoint endpoint) {
+        this.endpoint = endpoint;
+        this.baseUrl = StringUtils.removeEnd(endpoint.getUrl(), "/");
+        this.authorization = StringUtils.isEmpty(endpoint.getUsername()) ? null
+                : "Basic " + Base64.getEncoder().encodeToString(
+                (endpoint.getUsername() + ":" + StringUtils.defaultString(endpoint.getPassword()))
+                        .getBytes(StandardCharsets.UTF_8));
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(endpoint.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(endpoint.getMaxConnections());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(endpoint.getConnectTimeout())
+                .setConnectionRequestTimeout(endpoint.getConnectTimeout())
+                .setSocketTimeout(endpoint.getReadTimeout())
+                .build();
+        this.httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .build();
+    }
+
+    public JiraEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Fetches the current status of the given issue from Jira.
+     * A missing issue is reported as a status without name rather than as an error.
+     *
+     * @param issueId
+     * @return
+     * @throws JiraException if Jira could not be queried
+     */
+    public JiraIssueStatus getIssueStatus(String issueId) throws JiraException {
+        HttpGet request = newRequest(ISSUE_API_PATH + encode(issueId) + "?fields=status");
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HTTP_NOT_FOUND) {
+                EntityUtils.consume(response.getEntity());
+                return new JiraIssueStatus(issueId, null, System.currentTimeMillis());
+            }
+            checkResponse(response, issueId);
+
+            try (JsonReader reader = newReader(response)) {
+                // Keep the requested ID, Jira answers with the new key for moved issues
+                return new JiraIssueStatus(issueId, readIssue(reader)[1], System.currentTimeMillis());
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new JiraException(String.format("Failed to retrieve issue %s from %s: %s",
+                    issueId, endpoint.getName(), e.getMessage()), e);
+        }
     }
 
-    public boolean isIssueIdValid(String issueId, List<String> allowedStatuses) throws InvalidEntryException, JiraException {
-        BasicCredentials creds = new BasicCredentials(username, password);
-        JiraClient jira = new JiraClient(url, creds);
+    /**
+     * Fetches the current status of all given issues with a single JQL search. Issues that are not
+     * returned by the search, e.g. missing or moved ones, are looked up individually.
+     *
+     * @param issueIds
+     * @return status per requested issue ID
+     * @throws JiraException if Jira could not be queried
+     */
+    public Map<String, JiraIssueStatus> getIssueStatuses(Set<String> issueIds) throws JiraException {
+        Map<String, JiraIssueStatus> statuses = new HashMap<>();
+        if (issueIds.size() == 1) {
+            String issueId = issueIds.iterator().next();
+            statuses.put(issueId, getIssueStatus(issueId));
+            return statuses;
+        }
+
+        String jql = issueIds.stream()
+                .map(issueId -> "\"" + issueId.replaceAll("[\"\\\\]", "") + "\"")
+                .collect(Collectors.joining(",", "key in (", ")"));
+        // validateQuery=false makes Jira ignore unknown keys instead of failing the whole search
+        HttpGet request = newRequest(SEARCH_API_PATH + "?jql=" + encode(jql) + "&fields=status&validateQuery=false"
+                + "&maxResults=" + issueIds.size());
+
+        long fetchedAt = System.currentTimeMillis();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            checkResponse(response, issueIds.toString());
+
+            try (JsonReader reader = newReader(response)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("issues") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            String[] issue = readIssue(reader);
+                            if (issue[0] != null && issueIds.contains(issue[0])) {
+                                statuses.put(issue[0], new JiraIssueStatus(issue[0], issue[1], fetchedAt));
+                            }
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new JiraException(String.format("Failed to search issues %s in %s: %s",
+                    issueIds, endpoint.getName(), e.getMessage()), e);
+        }
+
+        for (String issueId : issueIds) {
+            if (!statuses.containsKey(issueId)) {
+                statuses.put(issueId, getIssueStatus(issueId));
+            }
+        }
+        return statuses;
+    }
 
+    /**
+     * Sends a cheap request to put an established connection, including its TLS session, into
+     * the pool. The response itself is ignored.
+     *
+     * @throws JiraException if the endpoint could not be reached
+     */
+    public void connect() throws JiraException {
+        try (CloseableHttpResponse response = httpClient.execute(newRequest(SERVER_INFO_API_PATH))) {
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException e) {
+            throw new JiraException(String.format("Failed to connect to %s: %s",
+                    endpoint.getName(), e.getMessage()), e);
+        }
+    }
+
+    private HttpGet newRequest(String path) {
+        HttpGet request = new HttpGet(baseUrl + path);
+        request.setHeader(HttpHeaders.ACCEPT, "application/json");
+        if (authorization != null) {
+            request.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return request;
+    }
+
+    private void checkResponse(CloseableHttpResponse response, String issues) throws IOException, JiraException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HTTP_OK || response.getEntity() == null) {
+            EntityUtils.consume(response.getEntity());
+            throw new JiraException(String.format("Failed to retrieve issue %s from %s: HTTP %d",
+                    issues, endpoint.getName(), statusCode));
+        }
+    }
+
+    private static JsonReader newReader(CloseableHttpResponse response) throws IOException {
+        return new JsonReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads key and fields.status.name from an issue object, skipping everything else
+     *
+     * @param reader
+     * @return issue key and status name, either may be null
+     * @throws IOException
+     */
+    static String[] readIssue(JsonReader reader) throws IOException {
+        String key = null;
+        String statusName = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("key") && reader.peek() == JsonToken.STRING) {
+                key = reader.nextString();
+            } else if (name.equals("fields") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("status") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("name") && reader.peek() == JsonToken.STRING) {
+                                statusName = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new String[]{key, statusName};
+    }
+
+    private static String encode(String value) {
         try {
-            jira.getRestClient().get(url);
-        } catch (RestException | IOException|URISyntaxException e) {
-          //  TODO: handle it
-            e.printStackTrace();
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
 
-        Issue issue = jira.getIssue(issueId);
-        if (issue == null) {
+    /**
+     * Checks that the issue exists and is in one of the allowed statuses
+     *
+     * @param issueStatus
+     * @param allowedStatuses
+     * @return
+     * @throws InvalidEntryException
+     */
+    public static boolean isIssueIdValid(JiraIssueStatus issueStatus, List<String> allowedStatuses) throws InvalidEntryException {
+        String issueId = issueStatus.getIssueId();
+        if (!issueStatus.isFound()) {
             throw new InvalidEntryException("No Jira issue is found with given ID:" + issueId);
         }
 
         if (allowedStatuses != null) {
-            //log.info(">> Issue status {}", issue.getStatus().getName());
-            if (!allowedStatuses.contains(issue.getStatus().getName().toUpperCase())) {
-                throw new InvalidEntryException(String.format("Jira issue %s is in %s status. But allowed statuses are:%s", issueId, issue.getStatus().getName().toUpperCase(), allowedStatuses.toString()));
+            if (!allowedStatuses.contains(issueStatus.getStatus().toUpperCase())) {
+                throw new InvalidEntryException(String.format("Jira issue %s is in %s status. But allowed statuses are:%s", issueId, issueStatus.getStatus().toUpperCase(), allowedStatuses.toString()));
             }
         }
         return true;
     }
+
+    /**
+     * Removes any unwanted braces from Jira issue ID.
+     * In general this is not needed but to handle VMware use cases, this is added.
+     *
+     * @param value
+     * @return
+     */
+    public static String toIssueId(String value) {
+        return value.replaceAll("[\\[\\]]", "");
+    }
 }
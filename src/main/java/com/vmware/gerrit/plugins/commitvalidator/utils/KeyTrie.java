@@ -0,0 +1,125 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import java.util.*;
+
+/**
+ * Trie of the KEY_VAL keys of a commit template. Resolves the values of all keys with a single
+ * scan of the commit message, matching every line that starts with a key like the original
+ * per-key lookup did.
+ */
+public class KeyTrie {
+    private static final KeyTrie EMPTY = new KeyTrie(new Node(), 0);
+
+    private final Node root;
+    private final int size;
+
+    private KeyTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Builds a trie of the given keys. Empty keys are ignored.
+     *
+     * @param keys
+     * @return
+     */
+    public static KeyTrie of(Collection<String> keys) {
+        BuildNode buildRoot = new BuildNode();
+        Set<String> distinctKeys = new HashSet<>();
+        for (String key : keys) {
+            if (key == null || key.isEmpty() || !distinctKeys.add(key)) {
+                continue;
+            }
+            BuildNode node = buildRoot;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new BuildNode());
+            }
+            node.key = key;
+        }
+        return distinctKeys.isEmpty() ? EMPTY : new KeyTrie(buildRoot.freeze(), distinctKeys.size());
+    }
+
+    /**
+     * Extracts the value of every key from the commit message. For each key, the first line that
+     * starts with the key wins. The value is everything after the first colon of that line, or an
+     * empty string if there is none. Keys without a matching line are absent from the result.
+     *
+     * @param message
+     * @return
+     */
+    public Map<String, String> extract(String message) {
+        if (size == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> values = new HashMap<>(size * 2);
+        int length = message.length();
+        int lineStart = 0;
+        while (lineStart < length && values.size() < size) {
+            int lineEnd = message.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+
+            // Skip leading whitespace, like trim() did
+            int pos = lineStart;
+            while (pos < lineEnd && message.charAt(pos) <= ' ') {
+                pos++;
+            }
+
+            Node node = root;
+            while (pos < lineEnd && (node = node.child(message.charAt(pos))) != null) {
+                pos++;
+                if (node.key != null && !values.containsKey(node.key)) {
+                    values.put(node.key, valueOf(message, lineStart, lineEnd));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return values;
+    }
+
+    private static String valueOf(String message, int lineStart, int lineEnd) {
+        int colon = message.indexOf(':', lineStart);
+        if (colon < 0 || colon >= lineEnd) {
+            // No value is available for given key
+            return "";
+        }
+        return message.substring(colon + 1, lineEnd).trim();
+    }
+
+    private static class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private String key;
+
+        private Node child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class BuildNode {
+        private final Map<Character, BuildNode> children = new TreeMap<>();
+        private String key;
+
+        private Node freeze() {
+            Node node = new Node();
+            node.key = key;
+            node.chars = new char[children.size()];
+            node.children = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuildNode> child : children.entrySet()) {
+                node.chars[i] = child.getKey();
+                node.children[i] = child.getValue().freeze();
+                i++;
+            }
+            return node;
+        }
+    }
+}
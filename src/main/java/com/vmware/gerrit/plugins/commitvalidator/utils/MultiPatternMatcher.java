@@ -0,0 +1,137 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds the matches of several template entry patterns with one scan of the text. All patterns
+ * are combined into one alternation with a named group per entry. The scan resumes right after
+ * the start of every hit and checks the other patterns only at hit positions, so each entry gets
+ * exactly the matches a separate find() loop over its own pattern would return.
+ */
+@Slf4j
+public class MultiPatternMatcher {
+    private static final MultiPatternMatcher EMPTY = new MultiPatternMatcher(Collections.emptyList(), null);
+    // Group numbers shift once patterns are wrapped, so these patterns are scanned on their own
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    private final List<TemplateEntry> entries;
+    private final String[] groupNames;
+    private final Pattern combined;
+    private final ThreadLocal<Matcher> combinedMatcher;
+
+    private MultiPatternMatcher(List<TemplateEntry> entries, Pattern combined) {
+        this.entries = entries;
+        this.groupNames = new String[entries.size()];
+        for (int i = 0; i < groupNames.length; i++) {
+            groupNames[i] = groupName(i);
+        }
+        this.combined = combined;
+        this.combinedMatcher = combined == null ? null : ThreadLocal.withInitial(() -> this.combined.matcher(""));
+    }
+
+    /**
+     * Builds a matcher for all given entries that have a value pattern
+     *
+     * @param templateEntries
+     * @return
+     */
+    public static MultiPatternMatcher of(List<TemplateEntry> templateEntries) {
+        List<TemplateEntry> entries = new ArrayList<>();
+        for (TemplateEntry entry : templateEntries) {
+            if (entry.getValuePattern() != null) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+
+        Pattern combined = null;
+        if (entries.size() > 1 && entries.stream().noneMatch(entry -> BACK_REFERENCE.matcher(entry.getValuePattern().pattern()).find())) {
+            StringBuilder alternation = new StringBuilder();
+            for (int i = 0; i < entries.size(); i++) {
+                if (i > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?<").append(groupName(i)).append('>')
+                        .append(entries.get(i).getValuePattern().pattern()).append(')');
+            }
+            try {
+                combined = Pattern.compile(alternation.toString());
+            } catch (PatternSyntaxException e) {
+                log.warn("Unable to combine template entry patterns, matching them one by one: {}", e.getMessage());
+            }
+        }
+        return new MultiPatternMatcher(Collections.unmodifiableList(entries), combined);
+    }
+
+    /**
+     * Returns the matching strings of every entry in the given text, keyed by entry name.
+     * Entries without matches are absent from the result.
+     *
+     * @param text
+     * @return
+     */
+    public Map<String, List<String>> findAll(String text) {
+        if (entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String input = text.trim();
+        Map<String, List<String>> matches = new HashMap<>(entries.size() * 2);
+        if (combined == null) {
+            for (TemplateEntry entry : entries) {
+                Matcher matcher = entry.valueMatcher(input);
+                while (matcher.find()) {
+                    add(matches, entry, matcher.group());
+                }
+            }
+            return matches;
+        }
+
+        // Position from which each entry may match again, like successive find() calls
+        int[] nextStart = new int[entries.size()];
+        Matcher matcher = combinedMatcher.get().reset(input);
+        int from = 0;
+        while (from <= input.length() && matcher.find(from)) {
+            int position = matcher.start();
+            for (int i = 0; i < entries.size(); i++) {
+                if (position < nextStart[i]) {
+                    continue;
+                }
+                int end;
+                String value;
+                if (matcher.start(groupNames[i]) == position) {
+                    end = matcher.end(groupNames[i]);
+                    value = matcher.group(groupNames[i]);
+                } else {
+                    Matcher entryMatcher = entries.get(i).valueMatcher(input)
+                            .useTransparentBounds(true).useAnchoringBounds(false);
+                    entryMatcher.region(position, input.length());
+                    if (!entryMatcher.lookingAt()) {
+                        continue;
+                    }
+                    end = entryMatcher.end();
+                    value = entryMatcher.group();
+                }
+                add(matches, entries.get(i), value);
+                nextStart[i] = end > position ? end : position + 1;
+            }
+            from = position + 1;
+        }
+        return matches;
+    }
+
+    private static void add(Map<String, List<String>> matches, TemplateEntry entry, String value) {
+        matches.computeIfAbsent(entry.getName(), name -> new ArrayList<>()).add(value);
+    }
+
+    private static String groupName(int index) {
+        return "e" + index;
+    }
+}
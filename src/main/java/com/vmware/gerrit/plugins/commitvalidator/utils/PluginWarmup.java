@@ -0,0 +1,242 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.client.ListChangesOption;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommitInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.project.NoSuchProjectException;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import com.vmware.gerrit.plugins.commitvalidator.entities.CommitTemplate;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import com.vmware.gerrit.plugins.commitvalidator.entities.EndpointType;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ProjectRules;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationResult;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ValidationPlan;
+import lombok.extern.slf4j.Slf4j;
+import net.rcarz.jiraclient.JiraException;
+import org.eclipse.jgit.lib.Config;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pays the cold costs of the first validations in the background right after plugin start: the
+ * config snapshot with all template patterns, Jira connections, and the validation plans and
+ * resolved groups of branches with recently updated open changes. Optionally the statuses of
+ * issues referenced by these changes are fetched too. Pushes received meanwhile are validated as
+ * usual, they just do not benefit yet.
+ */
+@Slf4j
+@Singleton
+public class PluginWarmup implements LifecycleListener {
+    private final PluginConfigFactory cfg;
+    private final CommitValidatorConfig pluginConfig;
+    private final GerritApi gerritApi;
+    private final OneOffRequestContext requestContext;
+    private final GerritUtils gerritUtils;
+    private final JiraClientRegistry jiraClientRegistry;
+    private final JiraIssueStatusCache jiraIssueStatusCache;
+    private final TemplateValidator templateValidator;
+    private final Timer0 warmupLatency;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("CommitValidator-Warmup").setDaemon(true).build());
+    private volatile boolean complete;
+
+    @Inject
+    public PluginWarmup(PluginConfigFactory cfg, CommitValidatorConfig pluginConfig, GerritApi gerritApi,
+                        OneOffRequestContext requestContext, GerritUtils gerritUtils,
+                        JiraClientRegistry jiraClientRegistry, JiraIssueStatusCache jiraIssueStatusCache,
+                        TemplateValidator templateValidator, MetricMaker metricMaker) {
+        this.cfg = cfg;
+        this.pluginConfig = pluginConfig;
+        this.gerritApi = gerritApi;
+        this.requestContext = requestContext;
+        this.gerritUtils = gerritUtils;
+        this.jiraClientRegistry = jiraClientRegistry;
+        this.jiraIssueStatusCache = jiraIssueStatusCache;
+        this.templateValidator = templateValidator;
+        this.warmupLatency = metricMaker.newTimer("warmup/latency",
+                new Description("Time to warm up the plugin after start").setCumulative()
+                        .setUnit(Description.Units.MILLISECONDS));
+        metricMaker.newCallbackMetric("warmup/complete", Boolean.class,
+                new Description("Whether the warm-up after plugin start has finished").setGauge(),
+                () -> complete);
+    }
+
+    @Override
+    public void start() {
+        Config config = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
+        if (!config.getBoolean(Constants.CONFIG_SECTION_WARMUP, null, Constants.CONFIG_ENABLED, true)) {
+            log.info("Warm-up is disabled");
+            complete = true;
+            return;
+        }
+        int changeLimit = Math.max(0, config.getInt(Constants.CONFIG_SECTION_WARMUP, null,
+                Constants.CONFIG_WARMUP_CHANGES, Constants.DEFAULT_WARMUP_CHANGES));
+        boolean prefetchIssues = config.getBoolean(Constants.CONFIG_SECTION_WARMUP, null,
+                Constants.CONFIG_WARMUP_PREFETCH_ISSUES, false);
+        executor.execute(() -> warmUp(changeLimit, prefetchIssues));
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void warmUp(int changeLimit, boolean prefetchIssues) {
+        long start = System.nanoTime();
+        try {
+            // Building the snapshot compiles the patterns of all templates
+            ConfigSnapshot snapshot = pluginConfig.getSnapshot();
+            connectJiraEndpoints(snapshot);
+            if (changeLimit > 0) {
+                warmUpRecentChanges(changeLimit, prefetchIssues);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warm-up failed: {}", e.getMessage(), e);
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            warmupLatency.record(elapsed, TimeUnit.MILLISECONDS);
+            complete = true;
+            log.info("Warm-up finished in {} ms", elapsed);
+        }
+    }
+
+    private void connectJiraEndpoints(ConfigSnapshot snapshot) {
+        for (JiraEndpoint endpoint : snapshot.getJiraEndpoints().values()) {
+            try {
+                jiraClientRegistry.getClient(endpoint).connect();
+            } catch (JiraException e) {
+                log.warn("Warm-up: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resolves the validation plans and skip and approver groups of the branches with recently
+     * updated open changes, and collects the issues their current patch sets refer to
+     *
+     * @param changeLimit
+     * @param prefetchIssues
+     */
+    private void warmUpRecentChanges(int changeLimit, boolean prefetchIssues) {
+        Map<JiraEndpoint, Set<String>> issues = new HashMap<>();
+        Set<String> resolvedRefs = new HashSet<>();
+        try (ManualRequestContext ignored = requestContext.open()) {
+            List<ChangeInfo> changes = gerritApi.changes().query("status:open")
+                    .withLimit(changeLimit)
+                    .withOptions(ListChangesOption.CURRENT_REVISION, ListChangesOption.CURRENT_COMMIT)
+                    .get();
+            for (ChangeInfo change : changes) {
+                String refName = RefNames.fullName(change.branch);
+                ValidationPlan plan;
+                try {
+                    plan = pluginConfig.getValidationPlan(Project.nameKey(change.project), refName);
+                } catch (NoSuchProjectException e) {
+                    continue;
+                }
+                if (plan == null || !plan.getRules().isEnabled()) {
+                    continue;
+                }
+                if (resolvedRefs.add(change.project + ":" + refName)) {
+                    resolveUsers(change.project, plan.getRules());
+                }
+                if (prefetchIssues && plan.getCommitTemplate() != null) {
+                    collectIssues(plan.getCommitTemplate(), change, issues);
+                }
+            }
+        } catch (RestApiException e) {
+            log.warn("Warm-up: unable to query recently updated changes: {}", e.getMessage());
+        }
+        int prefetched = 0;
+        for (Map.Entry<JiraEndpoint, Set<String>> endpointIssues : issues.entrySet()) {
+            prefetched += prefetch(endpointIssues.getKey(), endpointIssues.getValue());
+        }
+        log.info("Warm-up resolved the rules of {} branches and prefetched {} issues", resolvedRefs.size(), prefetched);
+    }
+
+    /**
+     * Fetches the statuses of the given issues that are not cached yet and waits for them
+     *
+     * @param endpoint
+     * @param issueIds
+     * @return the number of issues whose status was fetched
+     */
+    private int prefetch(JiraEndpoint endpoint, Set<String> issueIds) {
+        List<CompletableFuture<JiraIssueStatus>> lookups = jiraIssueStatusCache.prefetch(endpoint, issueIds);
+        try {
+            CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+                    .get(endpoint.getConnectTimeout() + endpoint.getReadTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Warm-up: unable to fetch all issues from Jira endpoint {}: {}", endpoint.getName(), e.getMessage());
+        }
+        return (int) lookups.stream().filter(lookup -> lookup.isDone() && !lookup.isCompletedExceptionally()).count();
+    }
+
+    private void resolveUsers(String project, ProjectRules rules) {
+        try {
+            gerritUtils.resolveRules(rules.getSkipTemplateValidationForAuthors());
+            gerritUtils.resolveRules(rules.getSkipTemplateValidationForCommitters());
+            gerritUtils.resolveRules(rules.getAdditionalCodeReviewApprovers());
+        } catch (RestApiException e) {
+            log.warn("Warm-up: unable to resolve the users of project {}: {}", project, e.getMessage());
+        }
+    }
+
+    private void collectIssues(CommitTemplate commitTemplate, ChangeInfo change, Map<JiraEndpoint, Set<String>> issues) {
+        RevisionInfo revision = change.revisions == null ? null : change.revisions.get(change.currentRevision);
+        CommitInfo commit = revision == null ? null : revision.commit;
+        if (commit == null || commit.message == null) {
+            return;
+        }
+        // Messages parsed for the warm-up are not counted in the validation metrics
+        templateValidator.validateWithoutMetrics(commitTemplate, commit.subject, commit.message, new EndpointValidator() {
+            @Override
+            public TemplateEntryValidationResult validate(TemplateEntry entry, String value) {
+                return EndpointValidator.SKIP.validate(entry, value);
+            }
+
+            @Override
+            public void prefetch(TemplateEntry entry, List<String> values) {
+                if (entry.getEndpointType() != EndpointType.JIRA) {
+                    return;
+                }
+                JiraEndpoint jiraEndpoint = pluginConfig.getJiraEndpointConfig(entry.getEndpointName());
+                if (jiraEndpoint != null) {
+                    Set<String> endpointIssues = issues.computeIfAbsent(jiraEndpoint, e -> new LinkedHashSet<>());
+                    values.forEach(value -> endpointIssues.add(JiraUtils.toIssueId(value)));
+                }
+            }
+        });
+    }
+}
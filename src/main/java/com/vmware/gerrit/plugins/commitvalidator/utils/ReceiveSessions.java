@@ -0,0 +1,120 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.ReceivePackInitializer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.entities.PushRecord;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ReceiveSession;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ValidationRecord;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.transport.PostReceiveHook;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.ReceivePack;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the {@link ReceiveSession} of a receive operation. Gerrit validates all commits of a
+ * receive with the object reader of its receive pack, so the session is keyed by the reader's
+ * identity. The session ends in the post-receive hook, which also runs when commits were rejected,
+ * and its validation records are then logged as one push. Sessions of receives that end without
+ * the hook are ended once their reader is garbage collected.
+ * Commits that do not come from a receive pack, e.g. changes created through REST, never reach
+ * the hook. Each of them gets a session of its own, which is logged right away.
+ */
+@Singleton
+public class ReceiveSessions implements ReceivePackInitializer, PostReceiveHook {
+    // Only a fallback for readers that are kept alive after the receive
+    private static final long MAX_IDLE_MINUTES = 5;
+
+    private final CommitValidatorConfig pluginConfig;
+    private final ValidationLog validationLog;
+    // Object readers of the receive packs that have not ended yet, dropped with their receive pack
+    private final Cache<ObjectReader, Boolean> receivePackReaders = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+    private final Cache<Object, ReceiveSession> sessions = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterAccess(MAX_IDLE_MINUTES, TimeUnit.MINUTES)
+            .removalListener((RemovalNotification<Object, ReceiveSession> n) -> end(n.getValue()))
+            .build();
+
+    @Inject
+    public ReceiveSessions(CommitValidatorConfig pluginConfig, ValidationLog validationLog) {
+        this.pluginConfig = pluginConfig;
+        this.validationLog = validationLog;
+    }
+
+    /**
+     * Returns the session of the receive the given commit belongs to, starting one for its first
+     * commit. The time budget of the receive starts with its first commit.
+     *
+     * @param receiveEvent
+     * @return
+     */
+    public ReceiveSession get(CommitReceivedEvent receiveEvent) {
+        if (receiveEvent.revWalk == null) {
+            return newSession(receiveEvent, false);
+        }
+        ObjectReader reader = receiveEvent.revWalk.getObjectReader();
+        if (receivePackReaders.getIfPresent(reader) == null) {
+            return newSession(receiveEvent, false);
+        }
+        try {
+            return sessions.get(reader, () -> newSession(receiveEvent, true));
+        } catch (ExecutionException e) {
+            return newSession(receiveEvent, false);
+        }
+    }
+
+    /**
+     * Adds the record of a validated commit to its session. The record is logged right away if
+     * the end of the receive is not detected or the receive already ended, e.g. because Gerrit
+     * stopped waiting for the validation.
+     *
+     * @param session
+     * @param record
+     */
+    public void addRecord(ReceiveSession session, ValidationRecord record) {
+        if (!session.addRecord(record)) {
+            validationLog.log(session.newPushRecord(Collections.singletonList(record)));
+        } else if (!session.isTracked()) {
+            end(session);
+        }
+    }
+
+    @Override
+    public void init(Project.NameKey project, ReceivePack rp) {
+        receivePackReaders.put(rp.getRevWalk().getObjectReader(), Boolean.TRUE);
+    }
+
+    @Override
+    public void onPostReceive(ReceivePack rp, Collection<ReceiveCommand> commands) {
+        ObjectReader reader = rp.getRevWalk().getObjectReader();
+        receivePackReaders.invalidate(reader);
+        // Ends the session through the removal listener
+        sessions.invalidate(reader);
+    }
+
+    private void end(ReceiveSession session) {
+        PushRecord record = session != null ? session.end() : null;
+        if (record != null) {
+            validationLog.log(record);
+        }
+    }
+
+    private ReceiveSession newSession(CommitReceivedEvent receiveEvent, boolean tracked) {
+        return new ReceiveSession(System.currentTimeMillis() + pluginConfig.getSnapshot().getValidationTimeout(),
+                receiveEvent.project.getName(),
+                receiveEvent.user != null ? receiveEvent.user.getAccountId().get() : null, tracked);
+    }
+}
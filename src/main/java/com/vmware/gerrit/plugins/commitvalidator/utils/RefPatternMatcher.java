@@ -0,0 +1,120 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches ref names against the branch patterns of the project rules. A pattern is either
+ * - a regular expression if it starts with ^, matched as written against the full ref name,
+ *   e.g. ^refs/heads/release/[0-9]+\.x$
+ * - a glob if it contains * or ?, where * does not cross a / and ** does, e.g. release/*
+ * - an exact branch name otherwise.
+ * Globs and exact names that do not start with refs/ refer to branches under refs/heads/.
+ */
+@Slf4j
+public class RefPatternMatcher {
+    private static final String REFS_PREFIX = "refs/";
+    private static final String BRANCH_PREFIX = "refs/heads/";
+
+    private final Set<String> exactRefs;
+    private final List<Pattern> patterns;
+
+    private RefPatternMatcher(Set<String> exactRefs, List<Pattern> patterns) {
+        this.exactRefs = exactRefs;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Compiles the given branch patterns. Invalid regular expressions are logged and ignored.
+     *
+     * @param branchPatterns
+     * @return
+     */
+    public static RefPatternMatcher compile(List<String> branchPatterns) {
+        Set<String> exactRefs = new HashSet<>();
+        List<Pattern> patterns = new ArrayList<>();
+        for (String branchPattern : branchPatterns) {
+            String trimmed = branchPattern.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                if (trimmed.startsWith("^")) {
+                    patterns.add(Pattern.compile(trimmed));
+                } else if (trimmed.indexOf('*') >= 0 || trimmed.indexOf('?') >= 0) {
+                    patterns.add(Pattern.compile(globToRegex(toRefName(trimmed))));
+                } else {
+                    exactRefs.add(toRefName(trimmed));
+                }
+            } catch (PatternSyntaxException e) {
+                log.warn("Ignoring invalid branch pattern {}: {}", trimmed, e.getDescription());
+            }
+        }
+        return new RefPatternMatcher(exactRefs,
+                patterns.isEmpty() ? Collections.emptyList() : patterns);
+    }
+
+    /**
+     * Checks whether the full ref name, e.g. refs/heads/master, matches any of the patterns
+     *
+     * @param refName
+     * @return
+     */
+    public boolean matches(String refName) {
+        if (exactRefs.contains(refName)) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(refName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toRefName(String branchPattern) {
+        return branchPattern.startsWith(REFS_PREFIX) ? branchPattern : BRANCH_PREFIX + branchPattern;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        List<String> all = new ArrayList<>(exactRefs);
+        patterns.forEach(pattern -> all.add(pattern.pattern()));
+        return all.toString();
+    }
+}
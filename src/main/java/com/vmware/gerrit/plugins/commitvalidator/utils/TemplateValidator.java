@@ -0,0 +1,366 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.metrics.Timer1;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.CommitTemplate;
+import com.vmware.gerrit.plugins.commitvalidator.entities.MessageEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryKind;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryType;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationResult;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryValidationStatus;
+import com.vmware.gerrit.plugins.commitvalidator.utils.CommitValidatorMetrics.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Validates a commit message against the mandatory entries of a commit template. Used for pushed
+ * commits and for audits of existing history; endpoint checks are left to the caller's
+ * {@link EndpointValidator}. Thread safe.
+ */
+@Slf4j
+@Singleton
+public class TemplateValidator {
+    private static final Pattern BOOLEAN_PATTERN = Pattern.compile("true|false", Pattern.CASE_INSENSITIVE);
+    private static final ThreadLocal<Matcher> BOOLEAN_MATCHER = ThreadLocal.withInitial(() -> BOOLEAN_PATTERN.matcher(""));
+
+    private final CommitValidatorMetrics metrics;
+
+    @Inject
+    public TemplateValidator(CommitValidatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Validates a commit message that was not pushed, e.g. for an audit or the warm-up, and reports
+     * all missing or invalid entries. The validation is not counted in the stage metrics.
+     *
+     * @param commitTemplate
+     * @param commitSubject
+     * @param commitMessageBody
+     * @param endpointValidator
+     * @return the entries that are missing or invalid, empty if the message is valid
+     */
+    public List<MessageEntry> validateWithoutMetrics(CommitTemplate commitTemplate, String commitSubject,
+                                                     String commitMessageBody, EndpointValidator endpointValidator) {
+        return validate(commitTemplate, commitSubject, commitMessageBody, endpointValidator, false, false);
+    }
+
+    /**
+     * Validates a commit message. The entries are checked in stages of increasing cost: presence
+     * of keys and values, value types, value patterns and at last endpoint lookups. A stage only
+     * checks the entries that passed all earlier ones. With failFast, validation stops at the
+     * first failed entry, so a message that fails a local check causes no endpoint lookups.
+     *
+     * @param commitTemplate
+     * @param commitSubject
+     * @param commitMessageBody
+     * @param endpointValidator
+     * @param failFast
+     * @return the entries that are missing or invalid in template order, empty if the message is
+     * valid. With failFast, only the first failed entry.
+     */
+    public List<MessageEntry> validate(CommitTemplate commitTemplate, String commitSubject, String commitMessageBody,
+                                       EndpointValidator endpointValidator, boolean failFast) {
+        return validate(commitTemplate, commitSubject, commitMessageBody, endpointValidator, failFast, true);
+    }
+
+    private List<MessageEntry> validate(CommitTemplate commitTemplate, String commitSubject, String commitMessageBody,
+                                        EndpointValidator endpointValidator, boolean failFast, boolean recordMetrics) {
+        // Resolve the values of all key-value entries in one scan of the commit message
+        Map<String, String> keyValues;
+        try (Timer1.Context<Stage> ignored = startStage(Stage.PARSING, recordMetrics)) {
+            keyValues = commitTemplate.getKeyTrie().extract(commitMessageBody);
+        }
+
+        // Find the matches of all subject and body entries with one scan of each text
+        Map<String, List<String>> subjectMatches;
+        Map<String, List<String>> bodyMatches;
+        try (Timer1.Context<Stage> ignored = startStage(Stage.REGEX, recordMetrics)) {
+            subjectMatches = commitTemplate.getSubjectMatcher().findAll(commitSubject);
+            bodyMatches = commitTemplate.getBodyMatcher().findAll(commitMessageBody);
+        }
+
+        // Ignore the entry check if both key and value are not present in template
+        // entry definition
+        List<EntryCheck> checks = commitTemplate.getMandatoryEntry().stream()
+                .filter(entry -> !(StringUtils.isEmpty(entry.getKey()) && StringUtils.isEmpty(entry.getValue())))
+                .map(EntryCheck::new)
+                .collect(Collectors.toList());
+
+        // Key and value presence
+        for (EntryCheck check : checks) {
+            checkPresence(check, keyValues, subjectMatches, bodyMatches);
+            if (failFast && check.isFailed()) {
+                return Collections.singletonList(check.messageEntry);
+            }
+        }
+
+        // Boolean and integer key-value entries
+        for (EntryCheck check : checks) {
+            if (check.isPending() && check.entry.getKind() == TemplateEntryKind.KEY_VAL
+                    && (check.entry.getType() == TemplateEntryType.BOOLEAN || check.entry.getType() == TemplateEntryType.INTEGER)) {
+                TemplateEntryValidationResult result = check.entry.getType() == TemplateEntryType.BOOLEAN
+                        ? validateBoolEntry(check.values.get(0)) : validateIntEntry(check.values.get(0));
+                check.results[0] = result;
+                check.complete();
+                if (failFast && check.isFailed()) {
+                    return Collections.singletonList(check.messageEntry);
+                }
+            }
+        }
+
+        // Value patterns of string entries
+        for (EntryCheck check : checks) {
+            if (check.isPending()) {
+                checkPatterns(check, failFast);
+                if (failFast && check.isFailed()) {
+                    return Collections.singletonList(check.messageEntry);
+                }
+            }
+        }
+
+        // Endpoint lookups of the values that passed all local checks. Let the lookups of all
+        // entries go to the endpoints together before waiting for the first one.
+        for (EntryCheck check : checks) {
+            if (check.isPending()) {
+                endpointValidator.prefetch(check.entry, check.getUncheckedValues());
+            }
+        }
+        for (EntryCheck check : checks) {
+            if (check.isPending()) {
+                checkEndpoint(check, endpointValidator);
+                if (failFast && check.isFailed()) {
+                    return Collections.singletonList(check.messageEntry);
+                }
+            }
+        }
+
+        // Ignore VALID value entries
+        return checks.stream().filter(EntryCheck::isFailed).map(check -> check.messageEntry)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts timing a validation stage
+     *
+     * @param stage
+     * @param recordMetrics
+     * @return the timer context, null if the stage is not timed
+     */
+    private Timer1.Context<Stage> startStage(Stage stage, boolean recordMetrics) {
+        return recordMetrics ? metrics.startStage(stage) : null;
+    }
+
+    /**
+     * Looks up the values of the entry in the commit message
+     *
+     * @param check
+     * @param keyValues
+     * @param subjectMatches
+     * @param bodyMatches
+     */
+    private void checkPresence(EntryCheck check, Map<String, String> keyValues,
+                               Map<String, List<String>> subjectMatches, Map<String, List<String>> bodyMatches) {
+        TemplateEntry entry = check.entry;
+        List<String> values;
+        if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
+            // Extract value from matching key-value pair
+            String keyValue = keyValues.get(entry.getKey());
+
+            // If no key is found, return with missing entry message
+            if (keyValue == null) {
+                check.complete(TemplateEntryValidationStatus.MISSING_KEY);
+                return;
+            } else if (keyValue.isEmpty()) {
+                check.complete(TemplateEntryValidationStatus.MISSING_VALUE);
+                return;
+            }
+            values = Collections.singletonList(keyValue);
+        } else {
+            // Extract matching values
+            values = new ArrayList<>();
+            if (entry.getKind() == TemplateEntryKind.STR_SUB) {
+                values.addAll(subjectMatches.getOrDefault(entry.getName(), Collections.emptyList()));
+            } else if (entry.getKind() == TemplateEntryKind.STR_BODY) {
+                values.addAll(bodyMatches.getOrDefault(entry.getName(), Collections.emptyList()));
+            }
+
+            // Return if no matching values are found
+            if (values.isEmpty()) {
+                check.complete(TemplateEntryValidationStatus.MISSING_VALUE);
+                return;
+            }
+        }
+
+        // Set actual value to message
+        check.setValues(values);
+    }
+
+    /**
+     * Validates the values of a string entry as per entry value pattern. Values that also have to
+     * be validated against an endpoint are left unchecked, unless failFast is set and another value
+     * already failed.
+     *
+     * @param check
+     * @param failFast
+     */
+    private void checkPatterns(EntryCheck check, boolean failFast) {
+        TemplateEntry entry = check.entry;
+        for (int i = 0; i < check.values.size(); i++) {
+            // An entry without value pattern accepts any value
+            if (entry.getValuePattern() != null && !entry.valueMatcher(check.values.get(i).trim()).matches()) {
+                check.results[i] = new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE,
+                        String.format("No values matching '%s' format", entry.getValue()));
+            } else if (!entry.isValidateValueAgainstEndpoint()) {
+                check.results[i] = new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+            }
+        }
+        if (!entry.isValidateValueAgainstEndpoint() || (failFast && check.hasInvalidResult())) {
+            check.complete();
+        }
+    }
+
+    /**
+     * Validates the unchecked values of an entry against its endpoint
+     *
+     * @param check
+     * @param endpointValidator
+     */
+    private void checkEndpoint(EntryCheck check, EndpointValidator endpointValidator) {
+        TemplateEntry entry = check.entry;
+        for (int i = 0; i < check.values.size(); i++) {
+            if (check.results[i] != null) {
+                continue;
+            }
+            if (entry.getEndpointType() == null || StringUtils.isEmpty(entry.getEndpointName())) {
+                log.warn("Unable to validate the value of template entry {} against endpoint as endpoint details are missing", entry.getName());
+                check.results[i] = new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "No endpoint details in config");
+            } else {
+                check.results[i] = endpointValidator.validate(entry, check.values.get(i));
+            }
+        }
+        check.complete();
+    }
+
+    /**
+     * Validates boolean entry value
+     *
+     * @param entryActualValue
+     * @return
+     */
+    private TemplateEntryValidationResult validateBoolEntry(String entryActualValue) {
+        Matcher matcher = BOOLEAN_MATCHER.get().reset(entryActualValue);
+        if (!matcher.find()) {
+            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, "Not a boolean value");
+        }
+        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+    }
+
+    /**
+     * Validates integer entry value
+     *
+     * @param entryActualValue
+     * @return
+     */
+    private TemplateEntryValidationResult validateIntEntry(String entryActualValue) {
+        try {
+            Integer.parseInt(entryActualValue);
+        } catch (NumberFormatException e) {
+            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, "Not a number value");
+        }
+        return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
+    }
+
+
+    /**
+     * Progress of one mandatory entry through the validation stages
+     */
+    private static final class EntryCheck {
+        private final TemplateEntry entry;
+        private final MessageEntry messageEntry = new MessageEntry();
+        private List<String> values;
+        // Result per value, null while the value is not checked yet
+        private TemplateEntryValidationResult[] results;
+
+        EntryCheck(TemplateEntry entry) {
+            this.entry = entry;
+            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
+                messageEntry.setEntryName(entry.getKey());
+            } else {
+                messageEntry.setEntryName(entry.getName());
+            }
+            messageEntry.setKind(entry.getKind());
+            messageEntry.setEntryType(entry.getType());
+            messageEntry.setExample(entry.getExampleValue());
+        }
+
+        void setValues(List<String> values) {
+            this.values = values;
+            this.results = new TemplateEntryValidationResult[values.size()];
+            messageEntry.setActualValues(values);
+        }
+
+        boolean isPending() {
+            return messageEntry.getEntryValidationStatus() == null;
+        }
+
+        boolean isFailed() {
+            return !isPending() && messageEntry.getEntryValidationStatus() != TemplateEntryValidationStatus.VALID_VALUE;
+        }
+
+        boolean hasInvalidResult() {
+            return Arrays.stream(results)
+                    .anyMatch(result -> result != null && result.getStatus() == TemplateEntryValidationStatus.INVALID_VALUE);
+        }
+
+        List<String> getUncheckedValues() {
+            List<String> unchecked = new ArrayList<>();
+            for (int i = 0; i < values.size(); i++) {
+                if (results[i] == null) {
+                    unchecked.add(values.get(i));
+                }
+            }
+            return unchecked;
+        }
+
+        void complete(TemplateEntryValidationStatus status) {
+            messageEntry.setEntryValidationStatus(status);
+        }
+
+        /**
+         * Sets the entry status from the results of the checked values
+         */
+        void complete() {
+            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
+                messageEntry.setEntryValidationStatus(results[0].getStatus());
+                messageEntry.setValidationMessage(results[0].getMessage());
+            } else {
+                // Set the validation status of entry as INVALID if at least
+                // one value is invalid
+                List<String> invalidMessages = Arrays.stream(results)
+                        .filter(result -> result != null && result.getStatus() == TemplateEntryValidationStatus.INVALID_VALUE)
+                        .map(TemplateEntryValidationResult::getMessage)
+                        .collect(Collectors.toList());
+                if (!invalidMessages.isEmpty()) {
+                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.INVALID_VALUE);
+                    messageEntry.setValidationMessage(invalidMessages.toString());
+                } else {
+                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.VALID_VALUE);
+                }
+            }
+            log.debug("Template entry name: {}, entry value pattern: {}, entry actual value: {}",
+                    entry.getName(), entry.getValue(), messageEntry.getActualValues());
+        }
+    }
+}
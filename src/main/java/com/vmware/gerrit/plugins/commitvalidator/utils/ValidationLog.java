@@ -0,0 +1,48 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.entities.PushRecord;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ValidationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one JSON line per push to the plugin's validation log, with the validated commits nested.
+ * Pushes with rejections and errors are always written, accepted and skipped ones at the configured
+ * sample rate.
+ * The line is only built if it is written; the file is written by {@link ValidationLogFile}'s
+ * asynchronous appender, off the receiving thread.
+ */
+@Singleton
+public class ValidationLog {
+    public static final String LOG_NAME = "commit_validator_log";
+
+    private static final Logger log = LoggerFactory.getLogger(LOG_NAME);
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final CommitValidatorConfig pluginConfig;
+
+    @Inject
+    public ValidationLog(CommitValidatorConfig pluginConfig) {
+        this.pluginConfig = pluginConfig;
+    }
+
+    public void log(PushRecord record) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        if (record.getResult() == ValidationRecord.Result.ACCEPTED || record.getResult() == ValidationRecord.Result.SKIPPED) {
+            int sampleRate = pluginConfig.getSnapshot().getLogSampleRate();
+            if (sampleRate < 100 && ThreadLocalRandom.current().nextInt(100) >= sampleRate) {
+                return;
+            }
+        }
+        log.info(GSON.toJson(record));
+    }
+}
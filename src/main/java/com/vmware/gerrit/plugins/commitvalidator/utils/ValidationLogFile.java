@@ -0,0 +1,17 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.extensions.systemstatus.ServerInformation;
+import com.google.gerrit.server.util.PluginLogFile;
+import com.google.gerrit.server.util.SystemLog;
+import com.google.inject.Inject;
+import org.apache.log4j.PatternLayout;
+
+/**
+ * Sends the validation log to its own asynchronously written file in the site's logs directory
+ */
+public class ValidationLogFile extends PluginLogFile {
+    @Inject
+    public ValidationLogFile(SystemLog systemLog, ServerInformation serverInfo) {
+        super(systemLog, serverInfo, ValidationLog.LOG_NAME, new PatternLayout("[%d{ISO8601}] %m%n"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.vmware.gerrit.plugins.commitvalidator.listeners;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.FluentIterable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.api.changes.ChangeApi;
+import com.google.gerrit.extensions.api.changes.Changes;
+import com.google.gerrit.extensions.api.changes.ReviewInput;
+import com.google.gerrit.extensions.api.changes.RevisionApi;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.account.Emails;
+import com.google.gerrit.server.account.GroupBackend;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.validators.CommitValidationMessage;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectConfig;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraIssueStatus;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ResolvedUsers;
+import com.vmware.gerrit.plugins.commitvalidator.utils.EndpointExecutor;
+import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraIssueStatusCache;
+import net.rcarz.jiraclient.JiraException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CommitValidatorTest {
+    private static final String PROJECT = "test-project";
+    private static final String ISSUE = "ABC-1";
+    private static final String CHANGE_ID = PROJECT + "~master~I0123456789abcdef0123456789abcdef01234567";
+
+    private Injector injector;
+    private JiraIssueStatusCache jiraIssueStatusCache;
+    private Changes changes;
+    private Changes.QueryRequest query;
+    private RevisionApi revisionApi;
+    private ChangeApi changeApi;
+
+    @Before
+    public void setUp() throws Exception {
+        Config pluginConfig = new Config();
+        pluginConfig.fromText("[template-entry \"jira-issue\"]\n"
+                + "    value = [A-Z]+-[0-9]+\n"
+                + "    validateAgainstEndpoint = true\n"
+                + "    endpointType = JIRA\n"
+                + "    endpointName = default\n"
+                + "[commit-template \"default\"]\n"
+                + "    mandatoryEntry = jira-issue\n"
+                + "[endpoint-jira \"default\"]\n"
+                + "    url = https://jira.example.com\n"
+                + "    failurePolicy = recheck\n"
+                + "[validation]\n"
+                + "    recheckDelay = 10 ms\n");
+        Config projectConfig = new Config();
+        projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                Constants.CONFIG_PROJECT_RULES_BRANCH, "master");
+        projectConfig.setString("plugin", Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION,
+                Constants.CONFIG_PROJECT_RULES_COMMIT_TEMPLATE, "default");
+
+        ProjectState projectState = mock(ProjectState.class);
+        when(projectState.parents()).thenReturn(FluentIterable.of());
+        when(projectState.getConfig()).thenReturn(mock(ProjectConfig.class));
+        ProjectCache projectCache = mock(ProjectCache.class);
+        when(projectCache.get(any(Project.NameKey.class))).thenReturn(projectState);
+        PluginConfigFactory pluginConfigFactory = mock(PluginConfigFactory.class);
+        when(pluginConfigFactory.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN)).thenReturn(pluginConfig);
+        when(pluginConfigFactory.getFromProjectConfigWithInheritance(any(ProjectState.class),
+                eq(Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION)))
+                .thenReturn(new PluginConfig(Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION, projectConfig));
+
+        // Jira is down during the push and finds no such issue on the re-check
+        jiraIssueStatusCache = mock(JiraIssueStatusCache.class);
+        when(jiraIssueStatusCache.getIssueStatus(any(), eq(ISSUE), anyLong()))
+                .thenThrow(new JiraException("Jira is down"))
+                .thenReturn(new JiraIssueStatus(ISSUE, null, System.currentTimeMillis()));
+
+        ChangeInfo change = new ChangeInfo();
+        change.id = CHANGE_ID;
+        query = mock(Changes.QueryRequest.class);
+        when(query.get()).thenReturn(Collections.singletonList(change));
+        revisionApi = mock(RevisionApi.class);
+        changeApi = mock(ChangeApi.class);
+        when(changeApi.revision(any(String.class))).thenReturn(revisionApi);
+        changes = mock(Changes.class);
+        when(changes.query(any(String.class))).thenReturn(query);
+        when(changes.id(CHANGE_ID)).thenReturn(changeApi);
+        GerritApi gerritApi = mock(GerritApi.class);
+        when(gerritApi.changes()).thenReturn(changes);
+
+        injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(GerritApi.class).toInstance(gerritApi);
+                bind(GroupBackend.class).toInstance(mock(GroupBackend.class));
+                bind(IdentifiedUser.GenericFactory.class).toInstance(mock(IdentifiedUser.GenericFactory.class));
+                bind(Emails.class).toInstance(mock(Emails.class));
+                bind(OneOffRequestContext.class).toInstance(mock(OneOffRequestContext.class));
+                bind(PluginConfigFactory.class).toInstance(pluginConfigFactory);
+                bind(ProjectCache.class).toInstance(projectCache);
+                bind(MetricMaker.class).to(DisabledMetricMaker.class);
+                bind(JiraIssueStatusCache.class).toInstance(jiraIssueStatusCache);
+                bind(new TypeLiteral<Cache<String, ResolvedUsers>>() {
+                }).annotatedWith(Names.named(GerritUtils.CACHE_NAME)).toInstance(CacheBuilder.newBuilder().build());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        injector.getInstance(EndpointExecutor.class).stop();
+    }
+
+    @Test
+    public void recheckCommentsOnTheChangeOfThePushedCommit() throws Exception {
+        CommitReceivedEvent event = newCommitReceivedEvent("Fix the build " + ISSUE);
+        String sha = event.commit.name();
+
+        List<CommitValidationMessage> messages = injector.getInstance(CommitValidator.class).onCommitReceived(event);
+
+        // Accepted with a warning, the issue is checked again later
+        assertEquals(1, messages.size());
+        assertFalse(messages.get(0).isError());
+
+        verify(changes, timeout(5000)).query(String.format("commit:%s project:%s", sha, PROJECT));
+        verify(changeApi, timeout(5000)).revision(sha);
+        ArgumentCaptor<ReviewInput> review = ArgumentCaptor.forClass(ReviewInput.class);
+        verify(revisionApi, timeout(5000)).review(review.capture());
+        assertTrue(review.getValue().message.contains("No Jira issue is found with given ID:" + ISSUE));
+        assertEquals(Constants.MESSAGE_TAG, review.getValue().tag);
+    }
+
+    private static CommitReceivedEvent newCommitReceivedEvent(String message) {
+        String rawCommit = "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+                + "author Author <author@example.com> 1600000000 +0000\n"
+                + "committer Committer <committer@example.com> 1600000000 +0000\n"
+                + "\n" + message + "\n";
+        IdentifiedUser user = mock(IdentifiedUser.class);
+        when(user.getAccountId()).thenReturn(Account.id(42));
+        CommitReceivedEvent event = new CommitReceivedEvent();
+        event.project = new Project(Project.nameKey(PROJECT));
+        event.refName = "refs/heads/master";
+        event.commit = RevCommit.parse(rawCommit.getBytes(StandardCharsets.UTF_8));
+        event.user = user;
+        return event;
+    }
+}
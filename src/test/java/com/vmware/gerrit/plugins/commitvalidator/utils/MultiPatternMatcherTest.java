@@ -0,0 +1,85 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiPatternMatcherTest {
+    private static final long SEED = 20201018L;
+    private static final int ROUNDS = 5000;
+    private static final String ALPHABET = "aAb1-:. \n";
+
+    // Overlapping, empty, anchored, look-around and back-reference patterns
+    private static final List<String> PATTERNS = Arrays.asList(
+            "[A-Z]+-[0-9]+", "a", "aa", "a+", "a*", "b?", "[ab]+", "ab|a", "a|ab", "(?=a)", "(?<=b)a",
+            "^a", "a$", "^$", "\\bA\\w*", "\\s+", "[0-9]", "a(?!b)", "(a)\\1", "(?<c>b)\\k<c>",
+            "(?i)ab", "(?m)^b", "Bug: .*", "[^\\n]{2,3}");
+
+    @Test
+    public void findsTheSameMatchesAsSeparateFindLoops() {
+        Random random = new Random(SEED);
+        for (int round = 0; round < ROUNDS; round++) {
+            List<TemplateEntry> entries = new ArrayList<>();
+            int entryCount = 1 + random.nextInt(4);
+            for (int i = 0; i < entryCount; i++) {
+                entries.add(newEntry("entry" + i, PATTERNS.get(random.nextInt(PATTERNS.size()))));
+            }
+            String text = randomText(random);
+
+            assertEquals("Patterns " + patterns(entries) + ", text \"" + text + "\"",
+                    findEach(entries, text), MultiPatternMatcher.of(entries).findAll(text));
+        }
+    }
+
+    @Test
+    public void skipsEntriesWithoutPattern() {
+        List<TemplateEntry> entries = Arrays.asList(newEntry("issue", "[A-Z]+-[0-9]+"), newEntry("free", null));
+
+        assertEquals(findEach(entries.subList(0, 1), " Fix ABC-1 and XY-22 "),
+                MultiPatternMatcher.of(entries).findAll(" Fix ABC-1 and XY-22 "));
+    }
+
+    private static Map<String, List<String>> findEach(List<TemplateEntry> entries, String text) {
+        Map<String, List<String>> matches = new HashMap<>();
+        for (TemplateEntry entry : entries) {
+            if (entry.getValuePattern() == null) {
+                continue;
+            }
+            Matcher matcher = entry.getValuePattern().matcher(text.trim());
+            while (matcher.find()) {
+                matches.computeIfAbsent(entry.getName(), name -> new ArrayList<>()).add(matcher.group());
+            }
+        }
+        return matches;
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(16);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    private static List<String> patterns(List<TemplateEntry> entries) {
+        List<String> patterns = new ArrayList<>();
+        entries.forEach(entry -> patterns.add(entry.getValue()));
+        return patterns;
+    }
+
+    private static TemplateEntry newEntry(String name, String value) {
+        return new TemplateEntry(name, null, null, null, value, null, false, null, null, null,
+                value != null ? Pattern.compile(value) : null);
+    }
+}
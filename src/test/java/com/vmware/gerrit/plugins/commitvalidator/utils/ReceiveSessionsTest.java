@@ -0,0 +1,86 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import com.vmware.gerrit.plugins.commitvalidator.entities.PushRecord;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ReceiveSession;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ValidationRecord;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReceiveSessionsTest {
+    private static final Project.NameKey PROJECT = Project.nameKey("test-project");
+
+    private Repository repository;
+    private ValidationLog validationLog;
+    private ReceiveSessions receiveSessions;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryRepository(new DfsRepositoryDescription(PROJECT.get()));
+        CommitValidatorConfig pluginConfig = mock(CommitValidatorConfig.class);
+        when(pluginConfig.getSnapshot()).thenReturn(ConfigSnapshot.empty(new Config(), 1));
+        validationLog = mock(ValidationLog.class);
+        receiveSessions = new ReceiveSessions(pluginConfig, validationLog);
+    }
+
+    @Test
+    public void logsTheCommitsOfAReceivePackAsOnePushWhenItEnds() {
+        ReceivePack receivePack = new ReceivePack(repository);
+        receiveSessions.init(PROJECT, receivePack);
+
+        ReceiveSession session = receiveSessions.get(newEvent(new RevWalk(receivePack.getRevWalk().getObjectReader())));
+        receiveSessions.addRecord(session, new ValidationRecord("master", "a"));
+        assertSame(session, receiveSessions.get(newEvent(new RevWalk(receivePack.getRevWalk().getObjectReader()))));
+        receiveSessions.addRecord(session, new ValidationRecord("master", "b"));
+        verify(validationLog, never()).log(any());
+
+        receiveSessions.onPostReceive(receivePack, Collections.emptyList());
+
+        ArgumentCaptor<PushRecord> record = ArgumentCaptor.forClass(PushRecord.class);
+        verify(validationLog).log(record.capture());
+        assertEquals(2, record.getValue().getCommits().size());
+    }
+
+    @Test
+    public void logsCommitsRightAwayIfNotFromAReceivePack() {
+        // E.g. a change created through REST, which never reaches the post-receive hook
+        RevWalk revWalk = new RevWalk(repository);
+
+        ReceiveSession first = receiveSessions.get(newEvent(revWalk));
+        receiveSessions.addRecord(first, new ValidationRecord("master", "a"));
+        ReceiveSession second = receiveSessions.get(newEvent(revWalk));
+        receiveSessions.addRecord(second, new ValidationRecord("master", "b"));
+
+        assertNotSame(first, second);
+        verify(validationLog, times(2)).log(any());
+    }
+
+    private static CommitReceivedEvent newEvent(RevWalk revWalk) {
+        CommitReceivedEvent event = new CommitReceivedEvent();
+        event.project = new Project(PROJECT);
+        event.revWalk = revWalk;
+        return event;
+    }
+}
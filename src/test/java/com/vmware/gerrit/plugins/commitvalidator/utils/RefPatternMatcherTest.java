@@ -0,0 +1,38 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RefPatternMatcherTest {
+    @Test
+    public void prefixesExactNamesAndGlobsWithBranchRefs() {
+        RefPatternMatcher matcher = RefPatternMatcher.compile(Arrays.asList("master", "release/*", "refs/meta/config"));
+
+        assertTrue(matcher.matches("refs/heads/master"));
+        assertTrue(matcher.matches("refs/heads/release/1.0"));
+        assertFalse(matcher.matches("refs/heads/release/1.0/hotfix"));
+        assertTrue(matcher.matches("refs/meta/config"));
+        assertFalse(matcher.matches("refs/tags/master"));
+    }
+
+    @Test
+    public void matchesRegularExpressionsAsWritten() {
+        RefPatternMatcher matcher = RefPatternMatcher.compile(Collections.singletonList("^refs/heads/feature/.*"));
+
+        assertTrue(matcher.matches("refs/heads/feature/login"));
+        assertFalse(matcher.matches("refs/heads/bugfix/login"));
+    }
+
+    @Test
+    public void doesNotPrefixRegularExpressions() {
+        RefPatternMatcher matcher = RefPatternMatcher.compile(Collections.singletonList("^feature/.*"));
+
+        assertFalse(matcher.matches("refs/heads/feature/login"));
+        assertTrue(matcher.matches("feature/login"));
+    }
+}